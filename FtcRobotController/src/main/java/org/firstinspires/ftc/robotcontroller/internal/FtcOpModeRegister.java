@@ -31,8 +31,14 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
 
 package org.firstinspires.ftc.robotcontroller.internal;
 
+import android.os.Process;
+import android.os.SystemClock;
+
 import com.qualcomm.robotcore.eventloop.opmode.OpModeManager;
 import com.qualcomm.robotcore.eventloop.opmode.OpModeRegister;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.lang.reflect.Method;
 
 /**
  * {@link FtcOpModeRegister} is responsible for registering OpModes for use in an FTC game.
@@ -40,6 +46,11 @@ import com.qualcomm.robotcore.eventloop.opmode.OpModeRegister;
  */
 public class FtcOpModeRegister implements OpModeRegister {
 
+    private static final String TAG = "FtcOpModeRegister";
+
+    // written at build time by the OpModeProcessor module from TeamCode's @StaticOpMode classes
+    private static final String GENERATED_OPMODES = "org.firstinspires.ftc.teamcode.GeneratedOpModes";
+
     /**
      * {@link #register(OpModeManager)} is called by the SDK game in order to register
      * OpMode classes or instances that will participate in an FTC game.
@@ -64,5 +75,30 @@ public class FtcOpModeRegister implements OpModeRegister {
         /**
          * Any manual OpMode class registrations should go here.
          */
+        registerGeneratedOpModes(manager);
+    }
+
+    /**
+     * TeamCode's OpModes are registered from a class generated at build time, so they don't
+     * depend on the classpath scan. TeamCode depends on this module and not the other way
+     * round, hence the one reflective lookup. Logs how long after app start registration ran,
+     * which is the number to compare when checking restart times.
+     */
+    private void registerGeneratedOpModes(OpModeManager manager) {
+        long start = SystemClock.elapsedRealtime();
+        int count = 0;
+        try {
+            Class<?> generated = Class.forName(GENERATED_OPMODES);
+            Method register = generated.getMethod("register", OpModeManager.class);
+            register.invoke(null, manager);
+            count = generated.getField("COUNT").getInt(null);
+        } catch (ClassNotFoundException e) {
+            RobotLog.ww(TAG, "%s not found, no @StaticOpMode classes in TeamCode?", GENERATED_OPMODES);
+        } catch (ReflectiveOperationException e) {
+            RobotLog.ee(TAG, e, "registering generated OpModes failed");
+        }
+        long end = SystemClock.elapsedRealtime();
+        RobotLog.ii(TAG, "registered %d TeamCode OpModes in %d ms, %d ms after app start",
+                count, end - start, end - Process.getStartElapsedRealtime());
     }
 }
@@ -0,0 +1,235 @@
+package org.firstinspires.ftc.opmodeprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * OpModeRegistrationProcessor — turns TeamCode's @StaticOpMode classes into one generated class,
+ * org.firstinspires.ftc.teamcode.GeneratedOpModes, whose register(OpModeManager) registers them
+ * all with plain calls. FtcOpModeRegister calls it at startup, so none of these OpModes depend
+ * on the sdk's classpath scan and its per-class annotation reflection.
+ *
+ * Everything is matched by name so this module needs no sdk jars. Anything the sdk would only
+ * complain about on the robot (duplicate names, classes that aren't OpModes, no public no-arg
+ * constructor) is a compile error here instead.
+ */
+public class OpModeRegistrationProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.firstinspires.ftc.teamcode.util.StaticOpMode";
+    static final String OPMODE = "com.qualcomm.robotcore.eventloop.opmode.OpMode";
+    static final String PACKAGE = "org.firstinspires.ftc.teamcode";
+    static final String GENERATED = "GeneratedOpModes";
+
+    private static class Entry {
+        String className;
+        String name;
+        String flavor;
+        String group;
+        String preselect;
+        Element element;
+    }
+
+    private boolean generated = false;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        // one compile of TeamCode = one generated class, later rounds only see generated code
+        if (generated || annotations.isEmpty()) {
+            return false;
+        }
+        generated = true;
+
+        Messager messager = processingEnv.getMessager();
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        TypeElement opMode = processingEnv.getElementUtils().getTypeElement(OPMODE);
+
+        List<Entry> entries = new ArrayList<>();
+        Map<String, Entry> byName = new HashMap<>();
+        boolean failed = false;
+
+        for (Element element : round.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@StaticOpMode only goes on classes", element);
+                failed = true;
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!isRegistrable(type, opMode, messager)) {
+                failed = true;
+                continue;
+            }
+
+            Entry entry = read(type, annotation);
+            Entry clash = byName.put(entry.name, entry);
+            if (clash != null) {
+                messager.printMessage(Diagnostic.Kind.ERROR, String.format(
+                        "OpMode name \"%s\" is used by both %s and %s", entry.name, clash.className, entry.className),
+                        element);
+                failed = true;
+                continue;
+            }
+            entries.add(entry);
+        }
+
+        if (failed) {
+            return true;
+        }
+
+        // same order every build so the generated file only changes when the OpModes do
+        Collections.sort(entries, (a, b) -> a.className.compareTo(b.className));
+        write(entries);
+        return true;
+    }
+
+    // HELPER METHODS
+
+    private boolean isRegistrable(TypeElement type, TypeElement opMode, Messager messager) {
+        String problem = null;
+        if (opMode != null && !processingEnv.getTypeUtils().isSubtype(type.asType(), opMode.asType())) {
+            problem = "is not an OpMode";
+        } else if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+            problem = "must be public";
+        } else if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            problem = "is abstract";
+        } else if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            problem = "is an inner class, make it static";
+        } else if (!hasPublicNoArgConstructor(type)) {
+            problem = "needs a public no-arg constructor";
+        }
+        if (problem != null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@StaticOpMode " + type.getQualifiedName() + " " + problem, type);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry read(TypeElement type, TypeElement annotation) {
+        Entry entry = new Entry();
+        entry.element = type;
+        entry.className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        TypeMirror annotationType = annotation.asType();
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!processingEnv.getTypeUtils().isSameType(mirror.getAnnotationType(), annotationType)) {
+                continue;
+            }
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                    processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : values.entrySet()) {
+                String key = value.getKey().getSimpleName().toString();
+                String text = value.getValue().getValue().toString();
+                switch (key) {
+                    case "name":
+                        entry.name = text;
+                        break;
+                    case "type":
+                        entry.flavor = text;
+                        break;
+                    case "group":
+                        entry.group = text;
+                        break;
+                    case "preselectTeleOp":
+                        entry.preselect = text;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return entry;
+    }
+
+    private void write(List<Entry> entries) {
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE).append(";\n\n");
+        src.append("import com.qualcomm.robotcore.eventloop.opmode.OpModeManager;\n\n");
+        src.append("import org.firstinspires.ftc.robotcore.internal.opmode.OpModeMeta;\n\n");
+        src.append("// generated by OpModeProcessor from the @StaticOpMode classes, don't edit\n");
+        src.append("public final class ").append(GENERATED).append(" {\n\n");
+        src.append("    public static final int COUNT = ").append(entries.size()).append(";\n\n");
+        src.append("    private ").append(GENERATED).append("() {\n    }\n\n");
+        src.append("    public static void register(OpModeManager manager) {\n");
+        for (Entry e : entries) {
+            src.append("        manager.register(meta(").append(quote(e.name))
+                    .append(", OpModeMeta.Flavor.").append(e.flavor)
+                    .append(", ").append(quote(e.group))
+                    .append(", ").append(quote(e.preselect))
+                    .append("), ").append(e.className.replace('$', '.')).append(".class);\n");
+        }
+        src.append("    }\n\n");
+        src.append("    private static OpModeMeta meta(String name, OpModeMeta.Flavor flavor, String group, String preselect) {\n");
+        src.append("        OpModeMeta.Builder builder = new OpModeMeta.Builder()\n");
+        src.append("                .setName(name)\n");
+        src.append("                .setFlavor(flavor)\n");
+        src.append("                .setSource(OpModeMeta.Source.ANDROID_STUDIO);\n");
+        src.append("        if (!group.isEmpty()) {\n");
+        src.append("            builder.setGroup(group);\n");
+        src.append("        }\n");
+        src.append("        if (!preselect.isEmpty()) {\n");
+        src.append("            builder.setTransitionTarget(preselect);\n");
+        src.append("        }\n");
+        src.append("        return builder.build();\n");
+        src.append("    }\n");
+        src.append("}\n");
+
+        Element[] origins = new Element[entries.size()];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = entries.get(i).element;
+        }
+        try (Writer out = processingEnv.getFiler().createSourceFile(PACKAGE + "." + GENERATED, origins).openWriter()) {
+            out.write(src.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "couldn't write " + GENERATED + ": " + e);
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder q = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                q.append('\\');
+            }
+            q.append(c);
+        }
+        return q.append('"').toString();
+    }
+}
@@ -1,70 +1,293 @@
 package org.firstinspires.ftc.teamcode;
 
-import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose2D;
+import org.firstinspires.ftc.teamcode.control.CollisionDetector;
+import org.firstinspires.ftc.teamcode.util.MatchRecorder;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
 
-@Autonomous(name = "new teleop")
+@StaticOpMode(name = "new auto", type = StaticOpMode.Type.AUTONOMOUS, preselectTeleOp = "new teleop")
 public class Auto extends LinearOpMode {
     private HardwareMapConfig hw;
     private Drivetrain drivetrain;
     private Shooter shooter;
+    private Intake intake;
+    private PowerArbiter power;
+    private AutoPlan plan;
+    private MatchRecorder history;
+    private int driveSection, mechanismSection;
 
     // change these after testing
     private final double BACKWARD_DISTANCE = 500; // move backward 500mm
     private final double LEFT_DISTANCE = 300;     // move left 300mm
+    // drive / shooter maths and the subsystem loops run this many times in init so ART has compiled them, 0 = off
+    private static final int WARM_UP_ITERATIONS = 3000;
+
+    // what to do when a move is blocked (stalled or hit), see CollisionDetector
+    private enum CollisionResponse {
+        ABORT_STEP,          // stop this move where we are, carry on with the next step
+        BACK_OFF,            // back away from the move, retry it, then abort if still blocked
+        SKIP_TO_NEXT_ACTION  // abort, and skip the plan's following drives up to its next non-drive step
+    }
+    // TUNE THESE
+    private static final CollisionResponse ON_COLLISION = CollisionResponse.BACK_OFF;
+    private static final double BACK_OFF_MM = 150;
+    private static final long BACK_OFF_TIMEOUT_MS = 800;
+    private static final int RETRIES = 1;
+    private CollisionDetector collisions = new CollisionDetector();
+    private int collisionCount = 0;
+
+    // where the robot is placed at the start, field frame (mm, origin in the middle, heading 0 = facing +y),
+    // same frame as field_grid.bin, so the pose handed to teleop is ready for B's path planning
+    // CHANGE THESE to the measured start spots (facing the goal, backed up against it)
+    private static final Pose2D BLUE_START = new Pose2D(DistanceUnit.MM, -1200, 1200, AngleUnit.RADIANS, Math.PI / 4);
+    private static final Pose2D RED_START = new Pose2D(DistanceUnit.MM, 1200, 1200, AngleUnit.RADIANS, -Math.PI / 4);
+    // true once the poses above are measured, until then teleop doesn't trust the pose for path planning
+    private static final boolean START_POSES_MEASURED = false;
+
+    // picked during init, handed to teleop at the end
+    private MatchHandoff.Alliance alliance = MatchHandoff.Alliance.BLUE;
+    private int ballsHeld = 3; // preloaded
+
+    // set by a plan's spinup step, from then on the flywheels idle at the shot velocity for where we are
+    private boolean spunUp = false;
 
     @Override
     public void runOpMode() throws InterruptedException {
 
         // initialise hardware and subsystems
-        hw = new HardwareMapConfig(hardwareMap);
+        hw = RobotSession.hardware(hardwareMap, true);
         drivetrain = new Drivetrain(hw);
         shooter = new Shooter(hw);
+        intake = new Intake(hw);
+        power = new PowerArbiter(hw);
+        drivetrain.setPowerArbiter(power);
+        shooter.setPowerArbiter(power);
+        intake.setPowerArbiter(power);
+
+        // written by tools/auto_planner.py, null = run the built in routine below
+        plan = AutoPlan.load();
 
-        telemetry.addData("Status", "Init complete");
-        telemetry.update();
+        history = new MatchRecorder("auto", null, hw.battery);
+        driveSection = history.section("drivetrain");
+        mechanismSection = history.section("mechanisms");
 
-        waitForStart();
+        // the opening seconds of auto shouldn't be spent in the interpreter
+        long warmUpStart = System.nanoTime();
+        drivetrain.warmUp(WARM_UP_ITERATIONS);
+        shooter.warmUp(WARM_UP_ITERATIONS);
+        WarmUp.run(hw, WARM_UP_ITERATIONS);
+        double warmUpMs = (System.nanoTime() - warmUpStart) / 1e6;
+        history.put("warm_up_ms", warmUpMs);
+
+        // left bumper = red, right bumper = blue (same as ConceptBlackboard)
+        while (opModeInInit()) {
+            if (gamepad1.left_bumper) {
+                alliance = MatchHandoff.Alliance.RED;
+            } else if (gamepad1.right_bumper) {
+                alliance = MatchHandoff.Alliance.BLUE;
+            }
+            telemetry.addData("Status", "Init complete");
+            telemetry.addData("Alliance", "%s (LB red / RB blue)", alliance);
+            telemetry.addData("Plan", plan == null ? "built in" : plan.size() + " steps from " + AutoPlan.FILE_NAME);
+            telemetry.addData("Warm-up", "%.0f ms", warmUpMs);
+            telemetry.update();
+            idle();
+        }
 
         if (opModeIsActive()) {
+            // the pinpoint was reset to (0,0,0) here, put it in the field frame
+            hw.pinpoint.setPosition(alliance == MatchHandoff.Alliance.RED ? RED_START : BLUE_START);
+            drivetrain.setFieldLocalized(START_POSES_MEASURED);
+
+            if (plan != null) {
+                runPlan();
+            } else {
+                // move backwards
+                moveDistance(-BACKWARD_DISTANCE, 0); // negative Y = backward
 
-            // move backwards
-            moveDistance(-BACKWARD_DISTANCE, 0); // negative Y = backward
+                // shoot 3 preloaded balls
+                shootVolley();
 
-            // shoot 3 preloaded balls
-            shooter.startShootingSequence();
-            while (shooter.shootingCurrently && opModeIsActive()) {
-                shooter.loop(null); // we don't need gamepad input for auto
-                idle();
+                // move left
+                moveDistance(0, -LEFT_DISTANCE); // negative X = left
             }
+        }
+        intake.stop();
+        power.stop();
+
+        // also runs when auto is stopped early, teleop still wants the last known pose
+        hw.pinpoint.update();
+        double flywheel = shooter.shootingCurrently ? shooter.getTargetVelocity() : 0;
+        MatchHandoff.publish(hw, alliance, ballsHeld, flywheel, drivetrain.isFieldLocalized());
+
+        history.put("plan_steps", plan == null ? 0 : plan.size());
+        history.put("intake_jams", intake.getJamCount());
+        history.put("balls_left", ballsHeld);
+        history.put("collisions", collisionCount);
+        history.put("min_volts", power.getMinVolts());
+        history.save();
+        RobotLog.ii("Auto", "first loop %.1f ms, worst of opening %.1f ms, warm-up %.0f ms",
+                history.getFirstLoopMs(), history.getOpeningWorstMs(), warmUpMs);
+    }
+
+    // runs the planner's steps in order, background steps just switch a mechanism on or off
+    private void runPlan() {
+        for (int i = 0; i < plan.size() && opModeIsActive(); i++) {
+            switch (plan.step(i)) {
+                case DRIVE:
+                    if (!moveDistance(plan.first(i), plan.second(i)) && ON_COLLISION == CollisionResponse.SKIP_TO_NEXT_ACTION) {
+                        // the following drives assume this one got there, leave them out
+                        while (i + 1 < plan.size() && plan.step(i + 1) == AutoPlan.Step.DRIVE) {
+                            i++;
+                        }
+                    }
+                    break;
+                case SHOOT:
+                    shootVolley();
+                    break;
+                case SPIN_UP:
+                    // the target velocity is only known once the distance is set, and moves with the robot,
+                    // so updateMechanisms() keeps the idle velocity on it
+                    spunUp = true;
+                    shooter.setTargetDistance(drivetrain.distanceToGoal());
+                    shooter.setIdleVelocity(shooter.getTargetVelocity());
+                    break;
+                case INTAKE_ON:
+                    intake.setIntaking(true);
+                    break;
+                case INTAKE_OFF:
+                    intake.setIntaking(false);
+                    break;
+                case WAIT:
+                    waitMs(plan.first(i));
+                    break;
+            }
+        }
+    }
+
+    private void shootVolley() {
+        shooter.startShootingSequence();
+        while (shooter.shootingCurrently && opModeIsActive()) {
+            hw.clearBulkCache();
+            hw.pinpoint.update();
+            updateMechanisms();
+            idle();
+        }
+        ballsHeld = 0;
+    }
+
+    private void waitMs(double ms) {
+        long end = System.currentTimeMillis() + (long) ms;
+        while (System.currentTimeMillis() < end && opModeIsActive()) {
+            hw.clearBulkCache();
+            hw.pinpoint.update();
+            updateMechanisms();
+            idle();
+        }
+    }
 
-            // move left
-            moveDistance(0, -LEFT_DISTANCE); // negative X = left
+    // keeps the flywheels and intake running while auto is busy driving or waiting,
+    // called once at the end of every auto loop so it also closes the cycle for the history
+    private void updateMechanisms() {
+        history.begin(mechanismSection);
+        shooter.setTargetDistance(drivetrain.distanceToGoal());
+        if (spunUp) {
+            shooter.setIdleVelocity(shooter.getTargetVelocity());
         }
+        shooter.loop(null); // we don't need gamepad input for auto
+        intake.loop(null);
+        power.loop();
+        history.end(mechanismSection);
+        history.endCycle();
     }
 
-    // moves the robot using odometry
-    private void moveDistance(double deltaY, double deltaX) {
+    // moves the robot using odometry, relative to the robot (deltaY forward, deltaX right),
+    // false if it was blocked and gave up
+    private boolean moveDistance(double deltaY, double deltaX) {
         // current position
+        hw.pinpoint.update();
         double startX = hw.pinpoint.getPosX(DistanceUnit.MM);
         double startY = hw.pinpoint.getPosY(DistanceUnit.MM);
-
-        // Target position
-        double targetX = startX + deltaX;
-        double targetY = startY + deltaY;
         double targetHeading = hw.pinpoint.getHeading(AngleUnit.RADIANS); // keep heading constant
 
+        // robot frame -> field frame, the start poses aren't square to the field
+        // (heading 0 faces +y: forward is (-sin h, cos h), right is (cos h, sin h))
+        double sin = Math.sin(targetHeading);
+        double cos = Math.cos(targetHeading);
+        double targetX = startX + deltaX * cos - deltaY * sin;
+        double targetY = startY + deltaX * sin + deltaY * cos;
+
+        for (int attempt = 0; ; attempt++) {
+            CollisionDetector.Event event = driveTo(targetX, targetY, targetHeading);
+            if (event == CollisionDetector.Event.NONE) {
+                return true;
+            }
+            collisionCount++;
+            RobotLog.ww("Auto", "%s on the move to (%.0f, %.0f), attempt %d, %s", event, targetX, targetY,
+                    attempt + 1, ON_COLLISION);
+            if (ON_COLLISION != CollisionResponse.BACK_OFF || attempt >= RETRIES || !opModeIsActive()) {
+                return false;
+            }
+            backOff(targetX, targetY, targetHeading);
+        }
+    }
+
+    // drives until the target is reached (NONE) or the collision detector gives up on it
+    private CollisionDetector.Event driveTo(double targetX, double targetY, double targetHeading) {
         // Move until reached
+        collisions.reset();
+        drivetrain.resetControllers();
         drivetrain.goToTargetWithOdometry(targetX, targetY, targetHeading);
+        CollisionDetector.Event event = CollisionDetector.Event.NONE;
         while (!drivetrain.targetReached() && opModeIsActive()) {
+            hw.clearBulkCache();
+            history.begin(driveSection);
+            hw.pinpoint.update(); // nothing else updates the pose in auto
             drivetrain.goToTargetWithOdometry(targetX, targetY, targetHeading);
+            event = collisions.update(System.nanoTime(),
+                    drivetrain.getAppliedForward(), drivetrain.getAppliedStrafe(), drivetrain.getAppliedRotate(),
+                    drivetrain.getForwardVelocity(), drivetrain.getStrafeVelocity(), drivetrain.getTurnVelocity());
+            history.end(driveSection);
+            updateMechanisms();
+            if (event != CollisionDetector.Event.NONE) {
+                break;
+            }
             idle();
         }
 
         // stop motors
         drivetrain.stop();
+        return event;
+    }
+
+    // moves BACK_OFF_MM straight away from the target, gives up after a timeout (it may be boxed in)
+    private void backOff(double targetX, double targetY, double targetHeading) {
+        double x = hw.pinpoint.getPosX(DistanceUnit.MM);
+        double y = hw.pinpoint.getPosY(DistanceUnit.MM);
+        double distance = Math.hypot(targetX - x, targetY - y);
+        if (distance < 1) {
+            return;
+        }
+        double backX = x - (targetX - x) / distance * BACK_OFF_MM;
+        double backY = y - (targetY - y) / distance * BACK_OFF_MM;
+
+        long end = System.currentTimeMillis() + BACK_OFF_TIMEOUT_MS;
+        drivetrain.resetControllers();
+        drivetrain.goToTargetWithOdometry(backX, backY, targetHeading);
+        while (!drivetrain.targetReached() && System.currentTimeMillis() < end && opModeIsActive()) {
+            hw.clearBulkCache();
+            history.begin(driveSection);
+            hw.pinpoint.update();
+            drivetrain.goToTargetWithOdometry(backX, backY, targetHeading);
+            history.end(driveSection);
+            updateMechanisms();
+            idle();
+        }
+        drivetrain.stop();
     }
 }
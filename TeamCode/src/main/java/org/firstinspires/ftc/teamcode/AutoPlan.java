@@ -0,0 +1,119 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.ReadWriteFile;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+
+/**
+ * AutoPlan — the step list written by tools/auto_planner.py, loaded by Auto at init.
+ *
+ * One step per line in auto_plan.txt (settings folder), '#' lines are comments:
+ *   drive,&lt;y mm&gt;,&lt;x mm&gt;   move relative to the robot (y forward, x right), same as Auto.moveDistance
+ *   shoot                 full volley
+ *   spinup                flywheels to shooting speed in the background
+ *   intake_on / intake_off
+ *   wait,&lt;ms&gt;
+ * Parsed once into primitive arrays so running the plan does no string work.
+ */
+public class AutoPlan {
+
+    public static final String FILE_NAME = "auto_plan.txt";
+
+    public enum Step {
+        DRIVE, SHOOT, SPIN_UP, INTAKE_ON, INTAKE_OFF, WAIT
+    }
+
+    private final Step[] steps;
+    private final double[] a;
+    private final double[] b;
+
+    private AutoPlan(Step[] steps, double[] a, double[] b) {
+        this.steps = steps;
+        this.a = a;
+        this.b = b;
+    }
+
+    // the saved plan, or null if there isn't one (Auto then runs its built in routine)
+    public static AutoPlan load() {
+        File file = AppUtil.getInstance().getSettingsFile(FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return parse(ReadWriteFile.readFile(file));
+        } catch (RuntimeException e) {
+            RobotLog.ee("AutoPlan", e, "bad %s, using the built in auto", FILE_NAME);
+            return null;
+        }
+    }
+
+    static AutoPlan parse(String text) {
+        String[] lines = text.split("\n");
+        int count = 0;
+        for (String line : lines) {
+            if (isStep(line)) count++;
+        }
+
+        Step[] steps = new Step[count];
+        double[] a = new double[count];
+        double[] b = new double[count];
+        int i = 0;
+        for (String line : lines) {
+            if (!isStep(line)) continue;
+            String[] parts = line.trim().split(",");
+            switch (parts[0]) {
+                case "drive":
+                    steps[i] = Step.DRIVE;
+                    a[i] = Double.parseDouble(parts[1]);
+                    b[i] = Double.parseDouble(parts[2]);
+                    break;
+                case "shoot":
+                    steps[i] = Step.SHOOT;
+                    break;
+                case "spinup":
+                    steps[i] = Step.SPIN_UP;
+                    break;
+                case "intake_on":
+                    steps[i] = Step.INTAKE_ON;
+                    break;
+                case "intake_off":
+                    steps[i] = Step.INTAKE_OFF;
+                    break;
+                case "wait":
+                    steps[i] = Step.WAIT;
+                    a[i] = Double.parseDouble(parts[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown step: " + line);
+            }
+            i++;
+        }
+        return new AutoPlan(steps, a, b);
+    }
+
+    private static boolean isStep(String line) {
+        String trimmed = line.trim();
+        return !trimmed.isEmpty() && !trimmed.startsWith("#");
+    }
+
+    public int size() {
+        return steps.length;
+    }
+
+    public Step step(int i) {
+        return steps[i];
+    }
+
+    // drive: y mm, wait: ms
+    public double first(int i) {
+        return a[i];
+    }
+
+    // drive: x mm
+    public double second(int i) {
+        return b[i];
+    }
+}
@@ -0,0 +1,179 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DistanceSensor;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+
+/*
+BallCounter — keeps track of how many balls the robot is holding.
+
++1 when a ball comes in: the ball_sensor sees something close (if fitted),
+   otherwise the intake roller slows down / pulls more current as a ball goes past
+-1 when a ball goes out: the flywheel speed dips as it fires a ball
+
+GAMEPAD:
+left bumper - auto volley on / off (starts shooting as soon as the robot is full)
+ */
+public class BallCounter {
+
+    public static final int CAPACITY = 3;
+
+    private Intake intake;
+    private Shooter shooter;
+    private DistanceSensor ballSensor;
+
+    private int count = 0;
+
+    // auto volley
+    private boolean autoVolley = false;
+    private boolean lastLB = false;
+    private int autoVolleys = 0;
+
+    // TUNE THESE
+    private static final double BALL_SENSOR_MM = 60;      // closer than this = ball in front of sensor
+    private static final double INTAKE_DIP_RATIO = 0.7;   // roller below 70% of its normal speed = ball
+    private static final double INTAKE_REARM_RATIO = 0.9; // back above 90% = ready for the next ball
+    private static final double BALL_CURRENT_AMPS = 3.5;  // between free running and a jam
+    private static final double SHOT_DIP_RATIO = 0.9;     // flywheel below 90% of target = ball fired
+    private static final long MIN_GAP_MS = 200;           // two balls can't arrive closer than this
+
+    // intake signature state
+    private double intakeAverage = 0;
+    private boolean intakeDipped = false;
+    private boolean ballSeen = false;
+    private boolean reducedSensing = false;
+    private long lastInTime = 0;
+
+    // shot signature state
+    private boolean shotDipped = false;
+    private boolean wasFeeding = false;
+
+    // MAIN METHODS
+
+    public BallCounter(HardwareMapConfig hw, Intake intake, Shooter shooter) {
+        this.intake = intake;
+        this.shooter = shooter;
+        ballSensor = hw.ball_sensor;
+    }
+
+    // call after intake.loop() and shooter.loop()
+    public void loop(Gamepad gp) {
+        if (gp.left_bumper && !lastLB) {
+            autoVolley = !autoVolley;
+        }
+        lastLB = gp.left_bumper;
+
+        countIn();
+        countOut();
+
+        // full -> shoot straight away instead of waiting for the driver
+        if (autoVolley && count >= CAPACITY && !shooter.shootingCurrently) {
+            shooter.startShootingSequence();
+            autoVolleys++;
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("balls", "%d / %d", count, CAPACITY);
+        t.addData("auto volley", autoVolley ? "ON" : "off");
+    }
+
+    public void stop() {
+        autoVolley = false;
+    }
+
+    // HELPER METHODS
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count >= CAPACITY;
+    }
+
+    public int getAutoVolleys() {
+        return autoVolleys;
+    }
+
+    public void setReducedSensing(boolean reduced) {
+        reducedSensing = reduced;
+    }
+
+    // preloads in auto, or when the driver knows better
+    public void setCount(int balls) {
+        count = Math.max(0, Math.min(CAPACITY, balls));
+    }
+
+    private void countIn() {
+        long now = System.currentTimeMillis();
+
+        if (ballSensor != null) {
+            // balls only come in through the roller, so the sensor can rest when the loop is overrunning
+            if (reducedSensing && !intake.isIntaking()) {
+                return;
+            }
+            boolean seen = ballSensor.getDistance(DistanceUnit.MM) < BALL_SENSOR_MM;
+            if (seen && !ballSeen && now - lastInTime > MIN_GAP_MS) {
+                addBall(now);
+            }
+            ballSeen = seen;
+            return;
+        }
+
+        // the spin-up inrush (and its current sample) looks just like a ball going past, and the
+        // free running speed is learnt once the roller is up to speed, not from near zero
+        if (!intake.isIntaking() || intake.isClearingJam() || intake.isSpinningUp()) {
+            intakeAverage = 0;
+            intakeDipped = false;
+            return;
+        }
+
+        double velocity = intake.getVelocity();
+        if (intakeAverage == 0) {
+            intakeAverage = velocity;
+        }
+
+        boolean loaded = velocity < intakeAverage * INTAKE_DIP_RATIO
+                || intake.getCurrent() > BALL_CURRENT_AMPS;
+        if (loaded && !intakeDipped && now - lastInTime > MIN_GAP_MS) {
+            intakeDipped = true;
+            addBall(now);
+        } else if (intakeDipped && velocity > intakeAverage * INTAKE_REARM_RATIO) {
+            intakeDipped = false;
+        }
+
+        // only learn the free running speed, not the dips
+        if (!intakeDipped) {
+            intakeAverage += 0.1 * (velocity - intakeAverage);
+        }
+    }
+
+    private void countOut() {
+        boolean feeding = shooter.isFeeding();
+
+        if (feeding) {
+            double target = shooter.getTargetVelocity();
+            boolean dipped = shooter.getFlywheelVelocity() < target * SHOT_DIP_RATIO;
+            if (dipped && !shotDipped && count > 0) {
+                count--;
+            }
+            shotDipped = dipped;
+        } else if (wasFeeding) {
+            // the volley pushes everything out, so a missed dip can't leave a stale count
+            count = 0;
+            shotDipped = false;
+        }
+
+        wasFeeding = feeding;
+    }
+
+    private void addBall(long now) {
+        lastInTime = now;
+        if (count < CAPACITY) {
+            count++;
+        }
+    }
+}
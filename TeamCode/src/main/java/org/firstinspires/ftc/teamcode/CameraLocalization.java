@@ -0,0 +1,128 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose2D;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.teamcode.mechanisms.MultiCameraLocalizer;
+import org.firstinspires.ftc.teamcode.util.PoseHistory;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
+/*
+Drive around with both webcams running staggered AprilTag localisation and compare the
+merged vision pose with the pinpoint.
+
+GAMEPAD:
+sticks       - drive as normal
+right bumper - snap the pinpoint to the latest vision pose (moved forward by odometry since the frame),
+               refused if that pose is older than MAX_SNAP_AGE_MS or the odometry history
+ */
+@StaticOpMode(name = "multi camera localisation")
+public class CameraLocalization extends OpMode {
+
+    // camera mounts relative to the robot centre
+    // CHANGE THESE TO MATCH THE ROBOT
+    private static final Position FRONT_POSITION = new Position(DistanceUnit.MM, 0, 150, 200, 0);
+    private static final YawPitchRollAngles FRONT_ORIENTATION = new YawPitchRollAngles(AngleUnit.DEGREES, 0, -90, 0, 0);
+    private static final Position REAR_POSITION = new Position(DistanceUnit.MM, 0, -150, 200, 0);
+    private static final YawPitchRollAngles REAR_ORIENTATION = new YawPitchRollAngles(AngleUnit.DEGREES, 180, -90, 0, 0);
+
+    // a vision pose older than this is from somewhere the robot has left
+    // TUNE THIS
+    private static final long MAX_SNAP_AGE_MS = 500;
+
+    private HardwareMapConfig hw;
+    private Drivetrain drivetrain;
+    private MultiCameraLocalizer localizer;
+    private PoseHistory history = new PoseHistory(64);
+
+    private boolean lastRB = false;
+    private String snapStatus = "none yet";
+
+    @Override
+    public void init() {
+        hw = RobotSession.hardware(hardwareMap, true);
+        drivetrain = new Drivetrain(hw);
+
+        // the localizer builds its own portals, the session's would still hold the front webcam
+        RobotSession.releaseCamera();
+        if (hw.webcam_2 != null) {
+            localizer = new MultiCameraLocalizer(
+                    new WebcamName[]{hw.webcam, hw.webcam_2},
+                    new Position[]{FRONT_POSITION, REAR_POSITION},
+                    new YawPitchRollAngles[]{FRONT_ORIENTATION, REAR_ORIENTATION});
+        } else {
+            localizer = new MultiCameraLocalizer(
+                    new WebcamName[]{hw.webcam},
+                    new Position[]{FRONT_POSITION},
+                    new YawPitchRollAngles[]{FRONT_ORIENTATION});
+        }
+
+        telemetry.addData("Status", "Init completed");
+        telemetry.addData("Cameras", hw.webcam_2 != null ? 2 : 1);
+        telemetry.update();
+    }
+
+    @Override
+    public void loop() {
+        hw.clearBulkCache();
+        drivetrain.loop(gamepad1); // updates the pinpoint
+
+        history.add(System.nanoTime(),
+                hw.pinpoint.getPosX(DistanceUnit.MM),
+                hw.pinpoint.getPosY(DistanceUnit.MM),
+                hw.pinpoint.getHeading(AngleUnit.RADIANS));
+        localizer.update();
+
+        if (gamepad1.right_bumper && !lastRB) {
+            snapToVision();
+        }
+        lastRB = gamepad1.right_bumper;
+
+        telemetry.addData("pinpoint", "%.0f, %.0f mm  %.1f deg",
+                history.latestX(), history.latestY(), Math.toDegrees(history.latestHeading()));
+        localizer.updateTelemetry(telemetry);
+        telemetry.addData("snap", snapStatus);
+        telemetry.update();
+    }
+
+    @Override
+    public void stop() {
+        drivetrain.stop();
+        localizer.stop();
+    }
+
+    // vision pose is from when the frame was taken, add the odometry movement since then
+    private void snapToVision() {
+        long then = localizer.getTimestampNanos();
+        double ageMs = (System.nanoTime() - then) / 1e6;
+        if (localizer.getTagCount() == 0) {
+            snapStatus = "refused, no vision pose yet";
+            return;
+        }
+        // the history only goes back 64 loops, an older frame would be moved by the wrong odometry
+        if (ageMs > MAX_SNAP_AGE_MS || !history.covers(then)) {
+            snapStatus = String.format("refused, vision pose is %.0f ms old", ageMs);
+            return;
+        }
+
+        // odometry frame -> field frame rotation at capture time
+        double rotation = localizer.getHeading() - history.headingAt(then);
+        double dx = history.latestX() - history.xAt(then);
+        double dy = history.latestY() - history.yAt(then);
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+
+        double x = localizer.getX() + dx * cos - dy * sin;
+        double y = localizer.getY() + dx * sin + dy * cos;
+        double heading = localizer.getHeading() + history.headingChangeSince(then);
+
+        hw.pinpoint.setPosition(new Pose2D(DistanceUnit.MM, x, y, AngleUnit.RADIANS, heading));
+        drivetrain.setFieldLocalized(true);
+        snapStatus = String.format("snapped, vision pose was %.0f ms old", ageMs);
+    }
+}
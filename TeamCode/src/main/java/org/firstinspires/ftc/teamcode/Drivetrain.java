@@ -9,11 +9,22 @@ import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
+import org.firstinspires.ftc.teamcode.control.AimAssist;
+import org.firstinspires.ftc.teamcode.control.FieldGrid;
+import org.firstinspires.ftc.teamcode.control.PIDFController;
+import org.firstinspires.ftc.teamcode.control.PathPlanner;
+import org.firstinspires.ftc.teamcode.control.TractionControl;
 
 /*
 GAMEPAD:
 d pad down - toggles between normal and precision speed
-button b - auto position and shoot
+back - traction control on / off
+button b - auto position and shoot: plans around field elements to the nearest shooting pose
+           in field_grid.bin (tools/field_grid_builder.py), any stick cancels. Only once the
+           pose is in the field frame (auto start pose handed over, or a vision snap)
+right trigger (hold) - aim: turns to face the goal, left stick still drives, the shooter
+                       waits until the aim has settled
  */
 public class Drivetrain {
 
@@ -28,6 +39,7 @@ public class Drivetrain {
     };
 
     private boolean lastDpadDown = false;
+    private boolean lastBack = false;
     private boolean lastB = false;
     private SpeedMode speedMode = SpeedMode.NORMAL;
     private double speedMultiplier = 1.0;
@@ -36,11 +48,53 @@ public class Drivetrain {
     private boolean autoMoveActive;
     private double deadZoneValue = 0.05;
 
-    // CHANGE THESE TO TARGET POSITION
+    // CHANGE THESE TO TARGET POSITION (only used when there is no field grid on the robot)
     private double targetX = 500;
     private double targetY = 200;
     private double targetHeading = 0;
 
+    // what goToTargetWithOdometry is driving at right now, targetReached() checks against this
+    private double commandX, commandY, commandHeading;
+
+    // path to the nearest shooting pose, null planner = no field_grid.bin, drive straight
+    // TUNE THESE
+    private static final double WAYPOINT_RADIUS_MM = 150;  // move on to the next waypoint inside this
+    private static final double CANCEL_STICK = 0.3;        // driver takes over past this
+    private PathPlanner planner;
+    private int pathIndex = 0;
+    private int pathCount = 0;
+    private String pathStatus = "idle";
+    // the grid is in the field frame, a pinpoint reset to (0,0,0) at the start spot is not
+    private boolean fieldLocalized = false;
+
+    // CHANGE THESE TO GOAL POSITION (same frame as the pinpoint, mm)
+    private double goalX = 1500;
+    private double goalY = 1500;
+
+    // aim at the goal while the right trigger is held, rotate only
+    private static final double AIM_TRIGGER = 0.5;
+    private AimAssist aim = new AimAssist();
+    private boolean aiming = false;
+
+    // position / heading controllers for auto move
+    // TUNE THESE
+    private PIDFController forwardController = new PIDFController(0.01, 0, 0.0008, 0)
+            .setDerivativeFilter(0.3).setOutputLimits(-0.5, 0.5).setSlewRate(2.0);
+    private PIDFController strafeController = new PIDFController(0.01, 0, 0.0008, 0)
+            .setDerivativeFilter(0.3).setOutputLimits(-0.5, 0.5).setSlewRate(2.0);
+    private PIDFController headingController = new PIDFController(0.8, 0.1, 0.05, 0)
+            .setDerivativeFilter(0.3).setIntegralLimit(0.1).setOutputLimits(-0.4, 0.4);
+
+    // acceleration limit + slip back-off between drive() and the motors
+    private TractionControl traction = new TractionControl();
+    private final double[] wheelPower = new double[4];
+    private final double[] wheelVelocity = new double[4];
+    // chassis velocity in the robot frame from the last drive(), mm/s and rad/s
+    private double chassisForward, chassisStrafe, chassisTurn;
+    private PowerArbiter arbiter; // null = no current budget
+    // forward, strafe, rotate from the position controllers
+    private final double[] targetCommand = new double[3];
+
     // MAIN METHODS
 
     // constructor method
@@ -54,6 +108,9 @@ public class Drivetrain {
         // pinpoint
         pinpoint = hw.pinpoint;
 
+        FieldGrid grid = FieldGrid.load();
+        planner = grid == null ? null : new PathPlanner(grid);
+
         // right motors forward, left motors backward
         neWheel.setDirection(DcMotorSimple.Direction.FORWARD);
         seWheel.setDirection(DcMotorSimple.Direction.FORWARD);
@@ -71,21 +128,41 @@ public class Drivetrain {
     public void loop(Gamepad gp) {
 
         pinpoint.update();
+        aim.record(System.nanoTime(), pinpoint.getPosX(DistanceUnit.MM), pinpoint.getPosY(DistanceUnit.MM),
+                pinpoint.getHeading(AngleUnit.RADIANS));
 
         // set speed mode according to driver
         toggleSpeedMode(gp.dpad_down);
 
+        // traction control can be switched off if it ever fights the driver
+        if (gp.back && !lastBack) {
+            traction.setEnabled(!traction.isEnabled());
+        }
+        lastBack = gp.back;
+
         // check auto move button
         if (gp.b && !lastB) {
-            autoMoveActive = true;
+            startAutoMove();
         }
 
         lastB = gp.b;
 
+        // the driver can always take back control
+        if (autoMoveActive && (Math.abs(gp.left_stick_x) > CANCEL_STICK
+                || Math.abs(gp.left_stick_y) > CANCEL_STICK || Math.abs(gp.right_stick_x) > CANCEL_STICK)) {
+            autoMoveActive = false;
+            pathStatus = "cancelled";
+        }
+
         // drive to target with odometry if autoMove active
         if (autoMoveActive) {
-            goToTargetWithOdometry(targetX, targetY, targetHeading);
-            if (targetReached()) {
+            // auto move turns to its own pose heading
+            if (aiming) {
+                aim.reset();
+                aiming = false;
+            }
+            followPath();
+            if (pathIndex >= pathCount - 1 && targetReached()) {
                 autoMoveActive = false;
             }
         }
@@ -96,15 +173,36 @@ public class Drivetrain {
             double strafe = gp.left_stick_x; // left/right
             double rotate = gp.right_stick_x; // rotation
 
+            // aim replaces the driver's rotation, translation stays with the driver
+            boolean aimHeld = gp.right_trigger > AIM_TRIGGER;
+            if (aimHeld) {
+                double aimRotate = aim.update(System.nanoTime(), pinpoint.getHeadingVelocity(UnnormalizedAngleUnit.RADIANS),
+                        goalX, goalY, fieldLocalized);
+                // no tag and no field pose, nothing to aim at
+                if (aim.getSource() != AimAssist.Source.NONE) {
+                    rotate = aimRotate;
+                }
+            } else if (aiming) {
+                aim.reset();
+            }
+            aiming = aimHeld;
+
             drive(forward, strafe, rotate);
         }
     }
 
     public void updateTelemetry(Telemetry t) {
-
+        t.addData("traction", "%s, %d slips, limit seen %.0f mm/s2",
+                traction.isEnabled() ? "on" : "OFF", traction.getSlipEvents(), traction.getMeasuredTractionLimit());
+        t.addData("auto move", planner == null ? "no " + FieldGrid.FILE_NAME + ", straight line" : pathStatus);
+        if (aiming) {
+            t.addData("aim", "%s, %.1f deg off, %s", aim.getSource(), Math.toDegrees(aim.getError()),
+                    aim.isSettled() ? "settled" : "turning");
+        }
     }
 
     public void stop() {
+        traction.reset();
         neWheel.setPower(0);
         seWheel.setPower(0);
         swWheel.setPower(0);
@@ -133,10 +231,23 @@ public class Drivetrain {
     }
 
     public void goToTargetWithOdometry(double x, double y, double heading) {
+        commandX = x;
+        commandY = y;
+        commandHeading = heading;
+
         double currentX = pinpoint.getPosX(DistanceUnit.MM);
         double currentY = pinpoint.getPosY(DistanceUnit.MM);
         double currentHeading = pinpoint.getHeading(AngleUnit.RADIANS);
 
+        computeTargetCommand(currentX, currentY, currentHeading, x, y, heading, targetCommand);
+
+        // drive towards target
+        drive(targetCommand[0], targetCommand[1], targetCommand[2]);
+    }
+
+    // forward / strafe / rotate towards a target from a given pose, no hardware involved
+    public void computeTargetCommand(double currentX, double currentY, double currentHeading,
+                                     double x, double y, double heading, double[] out) {
         // difference between current and target
         double errorX = x - currentX;
         double errorY = y - currentY;
@@ -153,27 +264,61 @@ public class Drivetrain {
         // forward
         double robotY = errorX * sin + errorY * cos;
 
-        // proportional control (slows down as approaches point)
-        // TUNE THESE
-        double kP_pos = 0.01;
-        double kP_heading = 0.01;
-        double forward = clamp(robotY * kP_pos, -0.5, 0.5);
-        double strafe = clamp(robotX * kP_pos, -0.5, 0.5);
-        double rotate = clamp(errorHeading * kP_heading, -0.4, 0.4);
+        // pid on the robot frame errors (slows down as approaches point)
+        out[0] = forwardController.calculateFromError(robotY);
+        out[1] = strafeController.calculateFromError(robotX);
+        // heading error is counter-clockwise positive, drive()'s rotate is clockwise positive
+        out[2] = -headingController.calculateFromError(errorHeading);
+    }
 
-        // drive towards target
-        drive(forward, strafe, rotate);
+    // straight line distance from the robot to the goal using the pinpoint pose
+    public double distanceToGoal() {
+        return Math.hypot(goalX - pinpoint.getPosX(DistanceUnit.MM), goalY - pinpoint.getPosY(DistanceUnit.MM));
     }
 
-    private double clamp(double val, double min, double max) {
-        return Math.max(min, Math.min(max, val));
+    public boolean isAutoMoveActive() {
+        return autoMoveActive;
     }
 
-    // checks if bot is in shooting position
+    // true once the pinpoint pose is in the field frame (auto's start pose or a vision snap)
+    public void setFieldLocalized(boolean localized) {
+        fieldLocalized = localized;
+    }
+
+    public boolean isFieldLocalized() {
+        return fieldLocalized;
+    }
+
+    // latest goal tag bearing from vision, call every loop, aim falls back to the pose when it gets old
+    public void setGoalBearing(double bearingRad, long frameNanos) {
+        aim.setTagBearing(bearingRad, frameNanos);
+    }
+
+    public boolean isAiming() {
+        return aiming;
+    }
+
+    public boolean isAimSettled() {
+        return aiming && aim.isSettled();
+    }
+
+    // false while aiming with no tag and no field pose, the driver is turning by hand then
+    public boolean hasAimTarget() {
+        return aiming && aim.getSource() != AimAssist.Source.NONE;
+    }
+
+    // call before driving to a new target so old integral / derivative state doesn't carry over
+    public void resetControllers() {
+        forwardController.reset();
+        strafeController.reset();
+        headingController.reset();
+    }
+
+    // checks if bot is at the target last given to goToTargetWithOdometry
     public boolean targetReached() {
-        double distanceX = targetX - pinpoint.getPosX(DistanceUnit.MM);
-        double distanceY = targetY - pinpoint.getPosY(DistanceUnit.MM);
-        double headingError = targetHeading - pinpoint.getHeading(AngleUnit.RADIANS);
+        double distanceX = commandX - pinpoint.getPosX(DistanceUnit.MM);
+        double distanceY = commandY - pinpoint.getPosY(DistanceUnit.MM);
+        double headingError = commandHeading - pinpoint.getHeading(AngleUnit.RADIANS);
         headingError = Math.atan2(Math.sin(headingError), Math.cos(headingError));
 
         // convert to single distance
@@ -183,13 +328,93 @@ public class Drivetrain {
         return distance < 20 && Math.abs(headingError) < 0.05;
     }
 
+    // plans from here to the nearest shooting pose, straight at the fixed target if that's not possible
+    private void startAutoMove() {
+        autoMoveActive = true;
+        resetControllers();
+        pathIndex = 0;
+        pathCount = 0;
+        commandX = targetX;
+        commandY = targetY;
+        commandHeading = targetHeading;
+        if (planner == null) {
+            return;
+        }
+        // planning against obstacles offset by the whole start pose is worse than not moving
+        if (!fieldLocalized) {
+            autoMoveActive = false;
+            pathStatus = "pose not in the field frame yet, B ignored";
+            return;
+        }
+
+        int pose = planner.plan(pinpoint.getPosX(DistanceUnit.MM), pinpoint.getPosY(DistanceUnit.MM));
+        // a straight line would cut through everything the long path goes round
+        if (planner.isTooLong()) {
+            autoMoveActive = false;
+            pathStatus = String.format("path needs over %d waypoints, B ignored", PathPlanner.getMaxWaypoints());
+            return;
+        }
+        if (pose < 0) {
+            pathStatus = String.format("no path found (%.1f ms), straight line", planner.getLastPlanMs());
+            return;
+        }
+        FieldGrid grid = planner.getGrid();
+        commandX = grid.poseX(pose);
+        commandY = grid.poseY(pose);
+        commandHeading = grid.poseHeading(pose);
+        pathCount = planner.getWaypointCount();
+        pathStatus = String.format("to %s, %d waypoints (%.1f ms)", grid.poseName(pose), pathCount, planner.getLastPlanMs());
+    }
+
+    // drives at the current waypoint, already turning to the final heading on the way
+    private void followPath() {
+        double x = commandX, y = commandY, heading = commandHeading;
+        if (pathCount > 0) {
+            double robotX = pinpoint.getPosX(DistanceUnit.MM);
+            double robotY = pinpoint.getPosY(DistanceUnit.MM);
+            // moving on before the robot stops at a waypoint keeps it at speed round corners
+            while (pathIndex < pathCount - 1 && Math.hypot(planner.getWaypointX(pathIndex) - robotX,
+                    planner.getWaypointY(pathIndex) - robotY) < WAYPOINT_RADIUS_MM) {
+                pathIndex++;
+            }
+            x = planner.getWaypointX(pathIndex);
+            y = planner.getWaypointY(pathIndex);
+        }
+        goToTargetWithOdometry(x, y, heading);
+    }
+
     // returns zero if joystick value too little to care about
     private double deadzone(double value) {
         return Math.abs(value) > deadZoneValue ? value : 0;
     }
 
+    // stick values at or under this are treated as released
+    public double getDeadZone() {
+        return deadZoneValue;
+    }
+
     // main drive method with calculations
     public void drive(double forward, double strafe, double rotate) {
+        computeWheelPowers(forward, strafe, rotate, wheelPower);
+        applyTraction();
+
+        // drive has first call on battery current, it only gets scaled when the budget can't even cover it
+        if (arbiter != null) {
+            double scale = arbiter.scale(PowerArbiter.Load.DRIVE);
+            for (int i = 0; i < 4; i++) {
+                arbiter.request(PowerArbiter.Load.DRIVE, wheelPower[i], wheelVelocity[i]);
+                wheelPower[i] *= scale;
+            }
+        }
+
+        neWheel.setPower(wheelPower[0]);
+        seWheel.setPower(wheelPower[1]);
+        swWheel.setPower(wheelPower[2]);
+        nwWheel.setPower(wheelPower[3]);
+    }
+
+    // mecanum mixing into out (NE, SE, SW, NW), no hardware involved
+    public void computeWheelPowers(double forward, double strafe, double rotate, double[] out) {
         // apply deadzones too all three axes
         forward = deadzone(forward);
         strafe = deadzone(strafe);
@@ -214,10 +439,114 @@ public class Drivetrain {
         }
 
         // apply power scaled by speedMultiplier (normal or precision)
-        neWheel.setPower(w0 * speedMultiplier);
-        seWheel.setPower(w1 * speedMultiplier);
-        swWheel.setPower(w2 * speedMultiplier);
-        nwWheel.setPower(w3 * speedMultiplier);
+        out[0] = w0 * speedMultiplier;
+        out[1] = w1 * speedMultiplier;
+        out[2] = w2 * speedMultiplier;
+        out[3] = w3 * speedMultiplier;
+    }
+
+    // runs the drive maths on made up inputs so ART has compiled it before the first real loop,
+    // results go to scratch arrays and a spare TractionControl, the controllers are reset after
+    public void warmUp(int iterations) {
+        double[] powers = new double[4];
+        double[] velocities = new double[4];
+        double[] command = new double[3];
+        TractionControl scratch = new TractionControl();
+        AimAssist scratchAim = new AimAssist();
+        for (int i = 0; i < iterations; i++) {
+            double t = i * 0.01;
+            double a = Math.sin(t), b = Math.cos(t);
+            computeTargetCommand(a * 300, b * 300, a, 500, 200, 0, command);
+            computeWheelPowers(command[0] + a, command[1] + b, command[2], powers);
+            for (int w = 0; w < 4; w++) {
+                velocities[w] = powers[w] * 2000;
+            }
+            scratch.apply(powers, velocities, a * 800, b * 800, a);
+            long nanos = i * 20_000_000L;
+            scratchAim.record(nanos, a * 300, b * 300, a);
+            if (i % 2 == 0) {
+                scratchAim.setTagBearing(b * 0.3, nanos);
+            }
+            scratchAim.update(nanos, b, goalX, goalY, i % 4 == 0);
+            // a few plans as well, B is often the first thing pressed
+            if (planner != null && i % 200 == 0) {
+                planner.plan(a * 1500, b * 1500);
+            }
+        }
+        resetControllers();
+    }
+
+    // wheel speeds from the cycle snapshot against the pinpoint's chassis velocity (pinpoint.update() already ran)
+    private void applyTraction() {
+        wheelVelocity[0] = neWheel.getVelocity();
+        wheelVelocity[1] = seWheel.getVelocity();
+        wheelVelocity[2] = swWheel.getVelocity();
+        wheelVelocity[3] = nwWheel.getVelocity();
+
+        // field velocity into the robot frame, same rotation as goToTargetWithOdometry
+        double heading = pinpoint.getHeading(AngleUnit.RADIANS);
+        double sin = Math.sin(-heading);
+        double cos = Math.cos(-heading);
+        double velX = pinpoint.getVelX(DistanceUnit.MM);
+        double velY = pinpoint.getVelY(DistanceUnit.MM);
+        chassisStrafe = velX * cos - velY * sin;
+        chassisForward = velX * sin + velY * cos;
+        // pinpoint heading is counter-clockwise positive, drive()'s rotate is clockwise positive
+        chassisTurn = -pinpoint.getHeadingVelocity(UnnormalizedAngleUnit.RADIANS);
+
+        traction.apply(wheelPower, wheelVelocity, chassisForward, chassisStrafe, chassisTurn);
+    }
+
+    public void setPowerArbiter(PowerArbiter arbiter) {
+        this.arbiter = arbiter;
+    }
+
+    public TractionControl getTraction() {
+        return traction;
+    }
+
+    // power actually sent to a wheel last cycle (after traction + arbiter), NE, SE, SW, NW
+    public double getWheelPower(int wheel) {
+        return wheelPower[wheel];
+    }
+
+    // the wheel powers sent last cycle mixed back into forward / strafe / rotate (inverse of computeWheelPowers)
+    public double getAppliedForward() {
+        return (wheelPower[0] + wheelPower[1] + wheelPower[2] + wheelPower[3]) / 4;
+    }
+
+    public double getAppliedStrafe() {
+        return (-wheelPower[0] + wheelPower[1] - wheelPower[2] + wheelPower[3]) / 4;
+    }
+
+    public double getAppliedRotate() {
+        return (-wheelPower[0] - wheelPower[1] + wheelPower[2] + wheelPower[3]) / 4;
+    }
+
+    // chassis velocity in the robot frame as of the last drive(), turn clockwise positive like rotate
+    public double getForwardVelocity() {
+        return chassisForward;
+    }
+
+    public double getStrafeVelocity() {
+        return chassisStrafe;
+    }
+
+    public double getTurnVelocity() {
+        return chassisTurn;
+    }
+
+    // where auto move is driving right now (the current waypoint while following a path)
+    public double getTargetX() {
+        return commandX;
+    }
+
+    public double getTargetY() {
+        return commandY;
+    }
+
+    public double getTargetHeading() {
+        return commandHeading;
     }
 
 }
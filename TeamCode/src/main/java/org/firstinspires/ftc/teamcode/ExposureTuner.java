@@ -0,0 +1,70 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+
+import org.firstinspires.ftc.teamcode.mechanisms.ExposureOptimizer;
+import org.firstinspires.ftc.teamcode.mechanisms.VisionBudget;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
+/*
+Run once per venue with the robot on the field looking at a goal tag.
+The sweep runs during init; the result is saved as the venue profile and every
+OpMode after that sets the same exposure and gain as soon as the camera starts.
+
+GAMEPAD (during init):
+dpad left / right - pick the venue
+a                 - start the sweep
+ */
+@StaticOpMode(name = "camera exposure tuner")
+public class ExposureTuner extends OpMode {
+
+    // CHANGE THESE FOR THE SEASON
+    private static final String[] VENUES = {"workshop", "qualifier", "regional", "national"};
+
+    private HardwareMapConfig hw;
+    private VisionBudget vision;
+    private ExposureOptimizer optimizer;
+
+    private int venue = 0;
+    private boolean lastLeft, lastRight;
+
+    @Override
+    public void init() {
+        hw = RobotSession.hardware(hardwareMap, true);
+        vision = RobotSession.vision(hw);
+    }
+
+    @Override
+    public void init_loop() {
+        // tags on, low decimation, same as when we line up a shot
+        vision.update(VisionBudget.RobotMode.ALIGNING);
+
+        if (optimizer == null) {
+            if (gamepad1.dpad_right && !lastRight) venue = (venue + 1) % VENUES.length;
+            if (gamepad1.dpad_left && !lastLeft) venue = (venue + VENUES.length - 1) % VENUES.length;
+            lastLeft = gamepad1.dpad_left;
+            lastRight = gamepad1.dpad_right;
+
+            if (gamepad1.a) {
+                optimizer = new ExposureOptimizer(vision, VENUES[venue]);
+            }
+            telemetry.addData("venue", "%s (dpad to change, A to sweep)", VENUES[venue]);
+        } else {
+            optimizer.update();
+            telemetry.addData("venue", VENUES[venue]);
+            optimizer.updateTelemetry(telemetry);
+        }
+        telemetry.update();
+    }
+
+    @Override
+    public void loop() {
+        telemetry.addLine(optimizer != null && optimizer.isDone() ? "Saved, stop the OpMode" : "Run the sweep during init");
+        telemetry.update();
+    }
+
+    @Override
+    public void stop() {
+        vision.stop();
+    }
+}
@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/*
+FlywheelPreSpin — decides what the flywheels do while the shooter is not shooting.
+
+OFF   - far from the goal with nothing loaded, no point burning battery
+IDLE  - low, efficient speed so a volley never starts from zero
+READY - full shooting speed, because we are full or about to reach the shooting zone
+
+Also keeps score: spin-up time saved against a from-zero spin-up, and the battery
+energy spent keeping the wheels turning between volleys.
+ */
+public class FlywheelPreSpin {
+
+    public enum Level {
+        OFF, IDLE, READY
+    }
+
+    private Shooter shooter;
+    private BallCounter ballCounter;
+    private VoltageSensor battery;
+
+    private Level level = Level.OFF;
+
+    // TUNE THESE
+    private static final double IDLE_VELOCITY = 600;     // ticks/s
+    private static final double ZONE_MM = 1800;          // shooting range from the goal
+    private static final double FAR_MM = 3000;           // beyond this with no balls -> off
+    private static final double SPIN_UP_LEAD_S = 0.8;    // start ramping this long before reaching the zone
+    private static final long BASELINE_SPIN_UP_MS = 1500; // measured spin-up from zero
+    private static final long CURRENT_SAMPLE_MS = 200;   // getCurrent is not in the bulk read
+
+    // approach speed
+    private double lastDistance = -1;
+    private long lastTime = 0;
+    private double closingSpeed = 0; // mm/s, positive = getting closer
+
+    // energy
+    private double energyJoules = 0;
+    private long lastCurrentSample = 0;
+    private boolean reducedSensing = false;
+
+    // MAIN METHODS
+
+    public FlywheelPreSpin(HardwareMapConfig hw, Shooter shooter, BallCounter ballCounter) {
+        this.shooter = shooter;
+        this.ballCounter = ballCounter;
+        battery = hw.battery;
+    }
+
+    // call every loop before shooter.loop(), with the same distance given to the shooter
+    public void loop(double distanceMm) {
+        long now = System.currentTimeMillis();
+        updateClosingSpeed(distanceMm, now);
+
+        // distance we will have covered by the time the wheels are up to speed
+        double lookAhead = Math.max(0, closingSpeed) * SPIN_UP_LEAD_S;
+
+        if (ballCounter.isFull() || distanceMm - lookAhead < ZONE_MM) {
+            level = Level.READY;
+        } else if (distanceMm > FAR_MM && ballCounter.getCount() == 0) {
+            level = Level.OFF;
+        } else {
+            level = Level.IDLE;
+        }
+
+        switch (level) {
+            case OFF:
+                shooter.setIdleVelocity(0);
+                break;
+            case IDLE:
+                shooter.setIdleVelocity(IDLE_VELOCITY);
+                break;
+            case READY:
+                shooter.setIdleVelocity(shooter.getTargetVelocity());
+                break;
+        }
+
+        // only the energy spent between volleys is the cost of pre-spinning
+        // energy is only bookkeeping, so it is the first read to go when the loop is overrunning
+        if (reducedSensing) {
+            lastCurrentSample = 0;
+        } else if (level != Level.OFF && !shooter.shootingCurrently && now - lastCurrentSample >= CURRENT_SAMPLE_MS) {
+            if (lastCurrentSample != 0) {
+                double dt = (now - lastCurrentSample) / 1000.0;
+                energyJoules += battery.getVoltage() * shooter.getFlywheelCurrent() * dt;
+            }
+            lastCurrentSample = now;
+        } else if (level == Level.OFF || shooter.shootingCurrently) {
+            lastCurrentSample = 0;
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("pre-spin", level);
+        t.addData("spin-up saved", "%.1f s", getSpinUpSavedMs() / 1000.0);
+        t.addData("pre-spin energy", "%.0f J", energyJoules);
+    }
+
+    // HELPER METHODS
+
+    // overrunning loop: stop the current / voltage reads for the energy count
+    public void setReducedSensing(boolean reduced) {
+        reducedSensing = reduced;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getSpinUpSavedMs() {
+        return shooter.getVolleyCount() * BASELINE_SPIN_UP_MS - shooter.getTotalSpinUpMs();
+    }
+
+    public double getEnergyJoules() {
+        return energyJoules;
+    }
+
+    private void updateClosingSpeed(double distanceMm, long now) {
+        if (lastDistance >= 0 && now > lastTime) {
+            double speed = (lastDistance - distanceMm) * 1000.0 / (now - lastTime);
+            closingSpeed += 0.2 * (speed - closingSpeed); // smooth out odometry / tag jitter
+        }
+        lastDistance = distanceMm;
+        lastTime = now;
+    }
+}
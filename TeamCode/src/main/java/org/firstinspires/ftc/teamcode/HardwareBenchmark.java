@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.ReadWriteFile;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/*
+Times every hardware call TeamCode makes, on our own hubs and wiring, under each bulk
+caching mode, so a control loop can be budgeted from real numbers.
+
+cold - the first call of its kind this cycle: reads straight after a cache clear (so they
+       pay for the bulk read in AUTO / MANUAL), writes with a new value
+warm - the same call again straight away: reads served from the bulk cache if the mode
+       has one, writes repeating the last value (the sdk may skip those)
+
+Median / p90 / p99 / max per call go to telemetry and to hardware_benchmark.csv in the
+settings folder. Writes only wiggle the outputs (power 0 / 0.01, servo 0 / 0.005), but put
+the robot on a stand anyway.
+
+GAMEPAD:
+a                 - run (takes about a minute)
+dpad left / right - page through the bulk modes
+ */
+@StaticOpMode(name = "hardware benchmark")
+public class HardwareBenchmark extends LinearOpMode {
+
+    public static final String FILE_NAME = "hardware_benchmark.csv";
+
+    // TUNE THESE
+    private static final int SAMPLES = 200;       // timed calls per row
+    private static final int WARMUP_CALLS = 20;   // untimed calls first, so the jit has settled
+
+    private static final LynxModule.BulkCachingMode[] MODES = {
+            LynxModule.BulkCachingMode.OFF,
+            LynxModule.BulkCachingMode.AUTO,
+            LynxModule.BulkCachingMode.MANUAL
+    };
+
+    // one hardware call, i is the sample number so writes can alternate values
+    private interface Call {
+        void run(int i);
+    }
+
+    private HardwareMapConfig hw;
+    private DcMotor.RunMode intakeMode;
+    private final List<String> ops = new ArrayList<>();
+    private final List<Call> calls = new ArrayList<>();
+    private final List<Boolean> writes = new ArrayList<>();
+
+    private final long[] samples = new long[SAMPLES];
+    private final List<String> rows = new ArrayList<>();   // csv lines
+    private final List<String> pages = new ArrayList<>();  // telemetry text per mode
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        hw = RobotSession.hardware(hardwareMap, true);
+        intakeMode = hw.intake_motor.getMode();
+        addCalls();
+
+        telemetry.addLine("Robot on a stand, A to run");
+        telemetry.update();
+        waitForStart();
+
+        boolean ran = false;
+        int page = 0;
+        boolean lastLeft = false, lastRight = false;
+        while (opModeIsActive()) {
+            if (!ran && gamepad1.a) {
+                runAll();
+                ran = true;
+            }
+            if (gamepad1.dpad_right && !lastRight) page = (page + 1) % MODES.length;
+            if (gamepad1.dpad_left && !lastLeft) page = (page + MODES.length - 1) % MODES.length;
+            lastLeft = gamepad1.dpad_left;
+            lastRight = gamepad1.dpad_right;
+
+            if (ran && pages.size() == MODES.length) {
+                telemetry.addData("bulk mode", "%s (dpad to page)", MODES[page]);
+                telemetry.addLine("call  state  median / p90 / p99 / max us");
+                telemetry.addLine(pages.get(page));
+                telemetry.addData("saved", FILE_NAME);
+            } else {
+                telemetry.addLine(ran ? "Stopped early, nothing saved" : "Robot on a stand, A to run");
+            }
+            telemetry.update();
+            idle();
+        }
+
+        // hubs back to how every other opmode expects them
+        hw.startOpMode();
+        hw.intake_motor.setPower(0);
+        hw.intake_motor.setMode(intakeMode);
+    }
+
+    // everything the loop touches; optional devices only if they are in the config
+    private void addCalls() {
+        add("encoder position", false, i -> hw.wheel_0.getCurrentPosition());
+        add("motor velocity", false, i -> hw.wheel_0.getVelocity());
+        add("motor current", false, i -> hw.intake_motor.getCurrent(CurrentUnit.AMPS));
+        add("battery voltage", false, i -> hw.battery.getVoltage());
+        add("pinpoint update", false, i -> hw.pinpoint.update());
+        if (hw.ball_sensor != null) {
+            add("distance sensor", false, i -> hw.ball_sensor.getDistance(DistanceUnit.MM));
+        }
+        add("motor setPower", true, i -> hw.intake_motor.setPower(i % 2 == 0 ? 0 : 0.01));
+        add("motor setVelocity", true, i -> hw.intake_motor.setVelocity(i % 2 == 0 ? 0 : 5));
+        add("servo setPosition", true, i -> hw.feeder_servo.setPosition(i % 2 == 0 ? 0 : 0.005));
+        add("telemetry update", true, i -> telemetry.update());
+    }
+
+    private void add(String name, boolean write, Call call) {
+        ops.add(name);
+        writes.add(write);
+        calls.add(call);
+    }
+
+    private void runAll() {
+        rows.add("op,bulk_mode,state,samples,median_us,p90_us,p99_us,max_us");
+        for (LynxModule.BulkCachingMode mode : MODES) {
+            for (LynxModule hub : hw.hubs) {
+                hub.setBulkCachingMode(mode);
+            }
+            StringBuilder page = new StringBuilder();
+            for (int op = 0; op < calls.size(); op++) {
+                if (!opModeIsActive()) return;
+                telemetry.addData("running", "%s, %s", mode, ops.get(op));
+                telemetry.update();
+
+                // setVelocity needs the encoder mode, switch it outside the timing
+                boolean velocityCall = ops.get(op).equals("motor setVelocity");
+                if (velocityCall) {
+                    hw.intake_motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+                }
+                measure(op, mode, true, page);
+                measure(op, mode, false, page);
+                hw.intake_motor.setPower(0);
+                if (velocityCall) {
+                    hw.intake_motor.setMode(intakeMode);
+                }
+                hw.feeder_servo.setPosition(0);
+            }
+            pages.add(page.toString());
+        }
+
+        StringBuilder csv = new StringBuilder();
+        for (String row : rows) {
+            csv.append(row).append('\n');
+        }
+        ReadWriteFile.writeFile(AppUtil.getInstance().getSettingsFile(FILE_NAME), csv.toString());
+    }
+
+    private void measure(int op, LynxModule.BulkCachingMode mode, boolean cold, StringBuilder page) {
+        Call call = calls.get(op);
+        boolean write = writes.get(op);
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run(i);
+        }
+
+        for (int i = 0; i < SAMPLES; i++) {
+            if (cold) {
+                // a read that has to go to the hub, or a write with a new value
+                hw.clearBulkCache();
+                long start = System.nanoTime();
+                call.run(i);
+                samples[i] = System.nanoTime() - start;
+            } else {
+                // prime it, then time the repeat
+                call.run(write ? 0 : i);
+                long start = System.nanoTime();
+                call.run(write ? 0 : i);
+                samples[i] = System.nanoTime() - start;
+            }
+        }
+
+        Arrays.sort(samples);
+        double median = samples[SAMPLES / 2] / 1000.0;
+        double p90 = samples[(int) (SAMPLES * 0.90)] / 1000.0;
+        double p99 = samples[(int) (SAMPLES * 0.99)] / 1000.0;
+        double max = samples[SAMPLES - 1] / 1000.0;
+        String state = cold ? "cold" : "warm";
+
+        rows.add(String.format(Locale.US, "%s,%s,%s,%d,%.0f,%.0f,%.0f,%.0f",
+                ops.get(op), mode, state, SAMPLES, median, p90, p99, max));
+        page.append(String.format(Locale.US, "%s  %s  %.0f / %.0f / %.0f / %.0f%n",
+                ops.get(op), state, median, p90, p99, max));
+    }
+}
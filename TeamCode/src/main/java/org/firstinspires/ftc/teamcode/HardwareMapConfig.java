@@ -1,19 +1,30 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.qualcomm.hardware.gobilda.GoBildaPinpointDriver;
+import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DistanceSensor;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.TouchSensor;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
 
 import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * HardwareMapConfig — the only place hw.get() is ever called.
  *
  * DS config names must match these strings exactly.
  * All subsystems receive this object in their constructor
  * and pull references from it — they never call hw.get() themselves.
+ *
+ * Hubs run in MANUAL bulk caching: every OpMode loop must call clearBulkCache()
+ * once at the top, then all encoder / velocity reads that cycle come from one
+ * bulk read per hub (the cycle snapshot).
  */
 public class HardwareMapConfig {
 
@@ -32,16 +43,48 @@ public class HardwareMapConfig {
     // intake (single roller motor)
     public DcMotorEx intake_motor;
 
+    // optional distance sensor looking at the ball path, null if not in the config
+    public DistanceSensor ball_sensor;
+
+    // optional limit switch on the servo timing fixture, only fitted for ServoTimingCalibration
+    public TouchSensor servo_fixture;
+
     // getting rid of turret...2
 
     // webcam
     public WebcamName webcam;
+    public WebcamName webcam_2; // optional rear camera, null if not in the config
 
     // odometry pods management
     public GoBildaPinpointDriver pinpoint;
 
+    // control / expansion hubs
+    public List<LynxModule> hubs;
+
+    // battery voltage (control hub)
+    public VoltageSensor battery;
+
+    // the map these devices came from, used by RobotSession to check they are still current
+    private HardwareMap map;
+
 
     public HardwareMapConfig(HardwareMap hw) {
+        this(hw, true);
+    }
+
+    // no devices, WarmUp and the jvm tests fill in the fields they need with fakes
+    HardwareMapConfig() {
+        hubs = Collections.emptyList();
+    }
+
+    // resetPose = false keeps the pinpoint pose (e.g. handed over from auto) and skips the imu reset
+    public HardwareMapConfig(HardwareMap hw, boolean resetPose) {
+        map = hw;
+
+        // Bulk reads
+        hubs = hw.getAll(LynxModule.class);
+        startOpMode();
+        battery = hw.voltageSensor.iterator().next();
 
         // Drivetrain
         wheel_0 = hw.get(DcMotorEx.class, "wheel_0");
@@ -57,11 +100,14 @@ public class HardwareMapConfig {
 
         // Intake
         intake_motor = hw.get(DcMotorEx.class, "intake_motor");
+        ball_sensor = hw.tryGet(DistanceSensor.class, "ball_sensor");
+        servo_fixture = hw.tryGet(TouchSensor.class, "servo_fixture");
 
         // getting rid of turret...2
 
         // Webcam
         webcam = hw.get(WebcamName.class, "webcam");
+        webcam_2 = hw.tryGet(WebcamName.class, "webcam_2");
 
         // Pinpoint odometry
         pinpoint = hw.get(GoBildaPinpointDriver.class, "pinpoint");
@@ -72,6 +118,31 @@ public class HardwareMapConfig {
         pinpoint.setEncoderResolution(GoBildaPinpointDriver.GoBildaOdometryPods.goBILDA_4_BAR_POD);  // 2000 CPR, 32mm wheel
         pinpoint.setEncoderDirections(GoBildaPinpointDriver.EncoderDirection.FORWARD,
                 GoBildaPinpointDriver.EncoderDirection.FORWARD);
-        pinpoint.resetPosAndIMU(); // resets to (0,0,0)
+        if (resetPose) {
+            pinpoint.resetPosAndIMU(); // resets to (0,0,0)
+        }
+    }
+
+    // the sdk resets hub settings at the start of every opmode, so reapply ours
+    // (motor directions etc. are reapplied by the subsystem constructors)
+    public void startOpMode() {
+        for (LynxModule hub : hubs) {
+            hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+    }
+
+    // cheap check that the devices still belong to the active config (a config change builds a new map)
+    public boolean isValidFor(HardwareMap hw) {
+        return hw == map
+                && hw.tryGet(DcMotorEx.class, "wheel_0") == wheel_0
+                && hw.tryGet(DcMotorEx.class, "shooter_motor_0") == shooter_motor_0
+                && hw.tryGet(GoBildaPinpointDriver.class, "pinpoint") == pinpoint;
+    }
+
+    // start a new cycle snapshot, call once at the top of every loop
+    public void clearBulkCache() {
+        for (int i = 0; i < hubs.size(); i++) {
+            hubs.get(i).clearBulkCache();
+        }
     }
 }
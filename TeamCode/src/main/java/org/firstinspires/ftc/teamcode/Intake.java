@@ -2,18 +2,24 @@ package org.firstinspires.ftc.teamcode;
 
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
 
 /*
 gamepad:
 a - cycle intake mode: off -> slow (0.8) -> fast (1.0) -> outtake (0.75) -> off
 defaults to off
+
+jam detection: while pulling in, high current + a stalled roller means a jammed ball.
+the roller then reverses briefly and retries on its own, giving up after a few tries.
  */
 
 public class Intake {
 
     private DcMotorEx intakeMotor;
+    private PowerArbiter arbiter; // null = no current budget
 
     // four modes in cycle order
     private enum IntakeMode {
@@ -25,6 +31,41 @@ public class Intake {
 
     private boolean lastA = false;
 
+    // jam detection
+    private enum JamState {
+        RUNNING,    // normal, watching for a stall
+        REVERSING,  // backing the jammed ball out
+        RETRYING    // forward again, waiting for the roller to get back up to speed
+    }
+    private JamState jamState = JamState.RUNNING;
+
+    // TUNE THESE
+    private static final long CURRENT_SAMPLE_MS = 100; // getCurrent is not in the bulk read, so sample it slowly
+    private static final long REDUCED_CURRENT_SAMPLE_MS = 400; // while the loop is shedding sensor reads
+    private static final double JAM_CURRENT_AMPS = 5.0;
+    private static final double STALL_VELOCITY = 150;  // ticks/s, below this the roller counts as stopped
+    private static final long STALL_CONFIRM_MS = 150;  // stall must last this long to be a jam
+    private static final long SPIN_UP_IGNORE_MS = 300; // ignore the inrush after the power changes
+    private static final long REVERSE_MS = 250;
+    private static final double REVERSE_POWER = -0.75;
+    private static final long RETRY_MS = 400;          // time allowed to recover before it counts as still jammed
+    private static final int MAX_RETRIES = 3;
+
+    private double current = 0;
+    private double velocity = 0;
+    private long lastCurrentSample = 0;
+    private boolean reducedSensing = false;
+    private long modeStartTime = 0;
+    private long stallStartTime = 0;
+    private long jamStateStartTime = 0;
+    private long jamStartTime = 0;
+    private int retries = 0;
+
+    // jam log
+    private int jamCount = 0;
+    private long lastJamMs = 0;
+    private long totalJamMs = 0;
+
     // main methods
 
     public Intake(HardwareMapConfig hw) {
@@ -33,8 +74,8 @@ public class Intake {
 
     // called 50 times per second
     public void loop(Gamepad gp) {
-        // advance mode on each fresh press of a and use cases
-        if (gp.a && !lastA) {
+        // advance mode on each fresh press of a and use cases (no gamepad in auto)
+        if (gp != null && gp.a && !lastA) {
             switch (mode) {
                 case OFF:
                     mode = IntakeMode.SLOW;
@@ -49,8 +90,14 @@ public class Intake {
                     mode = IntakeMode.OFF;
                     break;
             }
+            startMode(System.currentTimeMillis());
+        }
+        lastA = gp != null && gp.a;
+
+        // a jam overrides the driver's mode until it is cleared
+        if (updateJamDetection()) {
+            return;
         }
-        lastA = gp.a;
 
         // apply power for current mode and using cases
         switch (mode) {
@@ -58,25 +105,188 @@ public class Intake {
                 intakeMotor.setPower(0);
                 break;
             case SLOW:
-                intakeMotor.setPower(0.8);
+                setRollerPower(0.8);
                 break;
             case FAST:
-                intakeMotor.setPower(1.0);
+                setRollerPower(1.0);
                 break;
             case OUTTAKE:
-                intakeMotor.setPower(-0.75);
+                setRollerPower(-0.75);
                 break;
         }
     }
 
     public void updateTelemetry(Telemetry t) {
         t.addData("intake mode", mode); // might be helpful
+        t.addData("intake jams", "%d (last %d ms)", jamCount, lastJamMs);
+        if (jamState != JamState.RUNNING) {
+            t.addData("intake", "CLEARING JAM");
+        }
     }
 
     public void stop() {
         mode = IntakeMode.OFF;
+        jamState = JamState.RUNNING;
         intakeMotor.setPower(0);
     }
 
     // HELPER METHODS
+
+    // returns true while the jam logic is driving the motor itself
+    private boolean updateJamDetection() {
+        long now = System.currentTimeMillis();
+
+        if (!isIntaking()) {
+            jamState = JamState.RUNNING;
+            stallStartTime = 0;
+            return false;
+        }
+
+        // velocity is from the bulk read this cycle, current is a separate i2c transaction
+        velocity = Math.abs(intakeMotor.getVelocity());
+        long samplePeriod = reducedSensing ? REDUCED_CURRENT_SAMPLE_MS : CURRENT_SAMPLE_MS;
+        if (now - lastCurrentSample >= samplePeriod) {
+            current = intakeMotor.getCurrent(CurrentUnit.AMPS);
+            lastCurrentSample = now;
+        }
+
+        boolean stalled = current > JAM_CURRENT_AMPS && velocity < STALL_VELOCITY;
+
+        switch (jamState) {
+            case RUNNING:
+                if (!stalled || now - modeStartTime < SPIN_UP_IGNORE_MS) {
+                    stallStartTime = 0;
+                    return false;
+                }
+                if (stallStartTime == 0) {
+                    stallStartTime = now;
+                }
+                if (now - stallStartTime >= STALL_CONFIRM_MS) {
+                    jamCount++;
+                    jamStartTime = stallStartTime;
+                    retries = 0;
+                    RobotLog.ii("Intake", "jam %d detected (%.1f A, %.0f ticks/s)", jamCount, current, velocity);
+                    setJamState(JamState.REVERSING, now);
+                    return true;
+                }
+                return false;
+
+            case REVERSING:
+                setRollerPower(REVERSE_POWER);
+                if (now - jamStateStartTime >= REVERSE_MS) {
+                    retries++;
+                    setJamState(JamState.RETRYING, now);
+                }
+                return true;
+
+            case RETRYING:
+                setRollerPower(mode == IntakeMode.FAST ? 1.0 : 0.8);
+                // wait out the inrush before judging
+                if (now - jamStateStartTime < SPIN_UP_IGNORE_MS) {
+                    return true;
+                }
+                if (!stalled) {
+                    lastJamMs = now - jamStartTime;
+                    totalJamMs += lastJamMs;
+                    RobotLog.ii("Intake", "jam %d cleared in %d ms after %d tries (total %d ms)",
+                            jamCount, lastJamMs, retries, totalJamMs);
+                    jamState = JamState.RUNNING;
+                    stallStartTime = 0;
+                    return false;
+                }
+                if (now - jamStateStartTime >= RETRY_MS) {
+                    if (retries >= MAX_RETRIES) {
+                        // still stuck, stop cooking the motor and let the driver sort it
+                        lastJamMs = now - jamStartTime;
+                        totalJamMs += lastJamMs;
+                        RobotLog.ww("Intake", "jam %d not cleared after %d tries, intake off", jamCount, retries);
+                        mode = IntakeMode.OFF;
+                        jamState = JamState.RUNNING;
+                        intakeMotor.setPower(0);
+                        return true;
+                    }
+                    setJamState(JamState.REVERSING, now);
+                }
+                return true;
+        }
+        return false;
+    }
+
+    private void setJamState(JamState newState, long now) {
+        jamState = newState;
+        jamStateStartTime = now;
+        forgetCurrent();
+    }
+
+    // new mode, the roller power changes
+    private void startMode(long now) {
+        modeStartTime = now;
+        jamState = JamState.RUNNING;
+        forgetCurrent();
+    }
+
+    // the last sample was taken at the old power (or was the inrush), take a new one next loop
+    private void forgetCurrent() {
+        current = 0;
+        lastCurrentSample = 0;
+    }
+
+    // roller speed and current from the last loop (only updated while intaking)
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public double getCurrent() {
+        return current;
+    }
+
+    public boolean isClearingJam() {
+        return jamState != JamState.RUNNING;
+    }
+
+    // the roller was just started or changed speed, its speed and current don't mean anything yet
+    public boolean isSpinningUp() {
+        return System.currentTimeMillis() - modeStartTime < SPIN_UP_IGNORE_MS;
+    }
+
+    public int getJamCount() {
+        return jamCount;
+    }
+
+    public long getTotalJamMs() {
+        return totalJamMs;
+    }
+
+    // overrunning loop: sample current less often, jams are caught a little later
+    public void setReducedSensing(boolean reduced) {
+        reducedSensing = reduced;
+    }
+
+    // lowest priority for battery current, see PowerArbiter
+    public void setPowerArbiter(PowerArbiter arbiter) {
+        this.arbiter = arbiter;
+    }
+
+    // every roller power goes through here so the arbiter sees it
+    private void setRollerPower(double power) {
+        if (arbiter != null) {
+            arbiter.request(PowerArbiter.Load.INTAKE, power, intakeMotor.getVelocity());
+            power *= arbiter.scale(PowerArbiter.Load.INTAKE);
+        }
+        intakeMotor.setPower(power);
+    }
+
+    // for auto: on = fast intake, off = stopped
+    public void setIntaking(boolean on) {
+        IntakeMode wanted = on ? IntakeMode.FAST : IntakeMode.OFF;
+        if (mode != wanted) {
+            mode = wanted;
+            startMode(System.currentTimeMillis());
+        }
+    }
+
+    // true while the roller is pulling balls in
+    public boolean isIntaking() {
+        return mode == IntakeMode.SLOW || mode == IntakeMode.FAST;
+    }
 }
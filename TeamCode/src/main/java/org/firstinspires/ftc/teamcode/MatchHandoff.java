@@ -0,0 +1,74 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose2D;
+
+/**
+ * MatchHandoff — what Auto knew when it finished, passed to TeleOp through the OpMode blackboard.
+ *
+ * Auto publishes at the end of runOpMode(). TeleOp takes it at init; if it is fresh the
+ * Pinpoint is not reset, so the field pose (and the B button auto-move target) carries
+ * straight on from where Auto stopped instead of restarting at (0, 0, 0). Auto sets its
+ * start pose in the field frame once it starts, fieldFrame says whether it got that far.
+ */
+public class MatchHandoff {
+
+    public enum Alliance {
+        RED, BLUE
+    }
+
+    // same idea as ConceptBlackboard, one key so the fields always travel together
+    private static final String KEY = "teamcode.matchHandoff";
+
+    // auto -> teleop in a match is well under this; anything older is from a previous run
+    private static final long MAX_AGE_MS = 60000;
+
+    public final Pose2D pose;
+    public final Alliance alliance;
+    public final int ballCount;
+    public final double flywheelVelocity; // ticks/s the flywheels were held at
+    public final boolean fieldFrame;      // pose is in the field frame (auto ran), not just the start spot
+    public final long publishedAt;
+
+    public MatchHandoff(Pose2D pose, Alliance alliance, int ballCount, double flywheelVelocity, boolean fieldFrame) {
+        this.pose = pose;
+        this.alliance = alliance;
+        this.ballCount = ballCount;
+        this.flywheelVelocity = flywheelVelocity;
+        this.fieldFrame = fieldFrame;
+        this.publishedAt = System.currentTimeMillis();
+    }
+
+    // called by Auto as it finishes
+    public static void publish(HardwareMapConfig hw, Alliance alliance, int ballCount, double flywheelVelocity,
+                               boolean fieldFrame) {
+        Pose2D pose = new Pose2D(DistanceUnit.MM,
+                hw.pinpoint.getPosX(DistanceUnit.MM),
+                hw.pinpoint.getPosY(DistanceUnit.MM),
+                AngleUnit.RADIANS,
+                hw.pinpoint.getHeading(AngleUnit.RADIANS));
+        OpMode.blackboard.put(KEY, new MatchHandoff(pose, alliance, ballCount, flywheelVelocity, fieldFrame));
+    }
+
+    // returns the handoff if it is fresh, null otherwise; it is removed either way so it is only used once
+    public static MatchHandoff take() {
+        Object value = OpMode.blackboard.remove(KEY);
+        if (!(value instanceof MatchHandoff)) {
+            return null;
+        }
+        MatchHandoff handoff = (MatchHandoff) value;
+        return handoff.isFresh() ? handoff : null;
+    }
+
+    public boolean isFresh() {
+        return System.currentTimeMillis() - publishedAt < MAX_AGE_MS;
+    }
+
+    // puts the pinpoint back where auto left it, without the blocking imu reset
+    public void restorePose(HardwareMapConfig hw) {
+        hw.pinpoint.setPosition(pose);
+    }
+}
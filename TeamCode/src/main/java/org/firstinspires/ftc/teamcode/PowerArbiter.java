@@ -0,0 +1,255 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+/*
+PowerArbiter — shares a battery current budget between the drivetrain, flywheels and intake
+so the hubs never brown out.
+
+Every setPower() goes through request() first, which estimates that motor's current from
+the commanded power and its velocity (a dc motor draws stall current * (power - speed / free
+speed)). Once per cycle loop() adds the requests up, and hands out the budget in priority
+order: drive first, then flywheels, then intake. Each subsystem multiplies its powers by
+scale() on the next cycle.
+
+The budget is what the battery can supply without sagging below SAFE_VOLTS. Its internal
+resistance is learnt from voltage readings against the estimated current, so requests
+are scaled down before the voltage actually drops. The main fuse is thermal: it carries
+PEAK_AMPS for a moment, so the estimates are only held to MAX_AMPS once the average
+current (over about FUSE_SECONDS) gets close to it. A hard start from standstill, near
+stall current on every wheel, doesn't take the whole budget from the flywheels.
+
+One motor's real getCurrent() is read every SAMPLE_MS (a different subsystem each time)
+and compared with the estimate for the power that motor was actually given, after the
+throttle, to correct the estimates.
+
+Every throttle is logged with how long it lasted, how deep it went and the lowest voltage.
+ */
+public class PowerArbiter {
+
+    // in priority order
+    public enum Load {
+        DRIVE, FLYWHEEL, INTAKE
+    }
+
+    private static final Load[] LOADS = Load.values();
+    private static final int LOAD_COUNT = LOADS.length;
+
+    // TUNE THESE
+    // per load: stall amps at 12 V, free running amps, free speed in ticks/s
+    private static final double[] STALL_AMPS = {9.2, 9.2, 9.2};
+    private static final double[] FREE_AMPS = {0.25, 0.25, 0.25};
+    private static final double[] FREE_TPS = {2796, 2600, 2800};
+    private static final double MAX_AMPS = 20;             // main fuse rating, held on average
+    private static final double PEAK_AMPS = 40;            // short bursts, a slow blow fuse takes 2x for over a second
+    private static final double FUSE_SECONDS = 1.0;        // averaging time for the fuse
+    private static final double FUSE_MARGIN_AMPS = 4;      // the peak allowance tapers off over this much below MAX_AMPS
+    private static final double SAFE_VOLTS = 9.0;          // hubs reset somewhere under 7 V, keep well clear
+    private static final double DEFAULT_RESISTANCE = 0.08; // ohms, battery + wiring, until it has been learnt
+    private static final long SAMPLE_MS = 100;             // one real current read this often
+    private static final long VOLTAGE_MS = 50;
+    private static final double SCALE_RECOVER_PER_S = 2.0; // throttling releases gradually
+    private static final double THROTTLE_LOG_BELOW = 0.95;
+
+    private final VoltageSensor battery;
+    // one motor per load whose real current is sampled
+    private final DcMotorEx[] sampleMotors;
+
+    // this cycle's requests
+    private final double[] requestAmps = new double[LOAD_COUNT];
+    // estimate for the sampled motor at the power it was really given (after scale)
+    private final double[] firstMotorAmps = new double[LOAD_COUNT];
+    private final boolean[] firstMotorSeen = new boolean[LOAD_COUNT];
+
+    // corrections from real current reads, measured / estimated
+    private final double[] correction = {1, 1, 1};
+    private final double[] scale = {1, 1, 1};
+
+    // battery model
+    private double restVolts = 0;
+    private double volts = 0;
+    private double resistance = DEFAULT_RESISTANCE;
+    private double minVolts = 99;
+    private double budgetAmps = MAX_AMPS;
+    private double totalAmps = 0;       // estimated draw this cycle, after throttling
+    private double averageAmps = 0;     // totalAmps over about FUSE_SECONDS
+
+    private long lastSample = 0;
+    private long lastVoltage = 0;
+    private long lastLoop = 0;
+    private int nextSample = 0;
+
+    // throttle log
+    private final long[] throttleStart = new long[LOAD_COUNT];
+    private final double[] throttleDeepest = new double[LOAD_COUNT];
+    private final long[] throttleMs = new long[LOAD_COUNT];
+    private final int[] throttleEvents = new int[LOAD_COUNT];
+
+    // MAIN METHODS
+
+    public PowerArbiter(HardwareMapConfig hw) {
+        battery = hw.battery;
+        sampleMotors = new DcMotorEx[] {hw.wheel_0, hw.shooter_motor_0, hw.intake_motor};
+    }
+
+    // call for every motor right before setPower(), with the power the subsystem wants
+    public void request(Load load, double power, double ticksPerSecond) {
+        int i = load.ordinal();
+        double amps = estimateAmps(i, power, ticksPerSecond);
+        requestAmps[i] += amps;
+        if (!firstMotorSeen[i]) {
+            firstMotorSeen[i] = true;
+            // the subsystem sends power * scale(), that is what the motor draws current for
+            firstMotorAmps[i] = estimateAmps(i, power * scale[i], ticksPerSecond);
+        }
+    }
+
+    // multiply this load's powers by this, 1 = not throttled
+    public double scale(Load load) {
+        return scale[load.ordinal()];
+    }
+
+    // call once at the end of every loop, after all the subsystems have run
+    public void loop() {
+        long now = System.currentTimeMillis();
+        double dt = lastLoop == 0 ? 0 : Math.min(0.1, (now - lastLoop) / 1000.0);
+        lastLoop = now;
+
+        // requests are what the subsystems want, they were sent scaled by this cycle's scale()
+        totalAmps = 0;
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            requestAmps[i] *= correction[i];
+            totalAmps += requestAmps[i] * scale[i];
+        }
+        if (dt > 0) {
+            averageAmps += Math.min(1, dt / FUSE_SECONDS) * (totalAmps - averageAmps);
+        }
+
+        if (now - lastVoltage >= VOLTAGE_MS) {
+            lastVoltage = now;
+            updateBattery(battery.getVoltage());
+        }
+        if (now - lastSample >= SAMPLE_MS) {
+            lastSample = now;
+            sampleCurrent();
+        }
+
+        // what the fuse allows right now: the peak while the average is well under the rating
+        double headroom = Math.max(0, Math.min(1, (MAX_AMPS - averageAmps) / FUSE_MARGIN_AMPS));
+        budgetAmps = MAX_AMPS + headroom * (PEAK_AMPS - MAX_AMPS);
+        // and what the battery can give before it drops under SAFE_VOLTS
+        if (restVolts > SAFE_VOLTS) {
+            budgetAmps = Math.min(budgetAmps, (restVolts - SAFE_VOLTS) / resistance);
+        }
+
+        // hand out in priority order
+        double remaining = budgetAmps;
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            double wanted = requestAmps[i];
+            double allowed = Math.min(wanted, Math.max(0, remaining));
+            remaining -= allowed;
+
+            double target = wanted > 0 ? allowed / wanted : 1;
+            // down straight away, back up gradually so the loads don't all surge together
+            scale[i] = target < scale[i] ? target : Math.min(target, scale[i] + SCALE_RECOVER_PER_S * dt);
+            logThrottle(i, now);
+
+            requestAmps[i] = 0;
+            firstMotorSeen[i] = false;
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("power", "%.1f A (avg %.1f) of %.1f budget, %.2f V (min %.2f)", totalAmps, averageAmps, budgetAmps, volts, minVolts);
+        if (scale[0] < 1 || scale[1] < 1 || scale[2] < 1) {
+            t.addData("power throttle", "drive %.2f  flywheel %.2f  intake %.2f", scale[0], scale[1], scale[2]);
+        }
+    }
+
+    public void stop() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < LOAD_COUNT; i++) {
+            // close any throttle still open so it is counted
+            scale[i] = 1;
+            logThrottle(i, now);
+            RobotLog.ii("PowerArbiter", "%s throttled %d times, %d ms in total", LOADS[i], throttleEvents[i], throttleMs[i]);
+        }
+        RobotLog.ii("PowerArbiter", "lowest voltage %.2f V, battery resistance %.3f ohm", minVolts, resistance);
+    }
+
+    // HELPER METHODS
+
+    public long getThrottleMs(Load load) {
+        return throttleMs[load.ordinal()];
+    }
+
+    public int getThrottleEvents(Load load) {
+        return throttleEvents[load.ordinal()];
+    }
+
+    public double getMinVolts() {
+        return minVolts;
+    }
+
+    public double getBudgetAmps() {
+        return budgetAmps;
+    }
+
+    // back emf cancels part of the supply, so a motor at speed draws far less than at stall
+    private static double estimateAmps(int i, double power, double ticksPerSecond) {
+        double p = Math.abs(power);
+        double speed = Math.min(1, Math.abs(ticksPerSecond) / FREE_TPS[i]);
+        return FREE_AMPS[i] * p + STALL_AMPS[i] * Math.max(0, p - speed);
+    }
+
+    private void updateBattery(double reading) {
+        volts = reading;
+        minVolts = Math.min(minVolts, reading);
+        if (totalAmps < 1.0) {
+            // barely loaded, this is close to the open circuit voltage
+            restVolts = restVolts == 0 ? reading : restVolts + 0.1 * (reading - restVolts);
+        } else if (restVolts > reading && totalAmps > 4.0) {
+            double measured = (restVolts - reading) / totalAmps;
+            resistance += 0.05 * (measured - resistance);
+            resistance = Math.max(0.02, Math.min(0.5, resistance));
+        }
+        if (restVolts == 0) {
+            restVolts = reading;
+        }
+    }
+
+    // one real current read per sample, cycling through the loads
+    private void sampleCurrent() {
+        int i = nextSample;
+        nextSample = (nextSample + 1) % LOAD_COUNT;
+        double estimated = firstMotorAmps[i];
+        if (!firstMotorSeen[i] || estimated < 0.5) {
+            return; // nothing running, nothing to learn
+        }
+        double measured = sampleMotors[i].getCurrent(CurrentUnit.AMPS);
+        double ratio = Math.max(0.5, Math.min(2.0, measured / estimated));
+        correction[i] += 0.2 * (ratio - correction[i]);
+    }
+
+    private void logThrottle(int i, long now) {
+        if (scale[i] < THROTTLE_LOG_BELOW) {
+            if (throttleStart[i] == 0) {
+                throttleStart[i] = now;
+                throttleDeepest[i] = scale[i];
+                throttleEvents[i]++;
+            }
+            throttleDeepest[i] = Math.min(throttleDeepest[i], scale[i]);
+        } else if (throttleStart[i] != 0) {
+            long length = now - throttleStart[i];
+            throttleMs[i] += length;
+            RobotLog.ww("PowerArbiter", "%s throttled for %d ms, down to %.0f%%, budget %.1f A, battery %.2f V (min %.2f)",
+                    LOADS[i], length, throttleDeepest[i] * 100, budgetAmps, volts, minVolts);
+            throttleStart[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.teamcode.mechanisms.VisionBudget;
+
+/**
+ * RobotSession — keeps the configured hardware alive between OpModes in the same robot controller run.
+ *
+ * The first OpMode pays for resolving devices, configuring the Pinpoint and opening the camera;
+ * later OpModes (Auto -> TeleOp) get the same objects back after a cheap validity check.
+ * Everything is torn down and rebuilt only when the active configuration changes (new
+ * HardwareMap) or the camera has been closed underneath us.
+ *
+ * Every VisionPortal on the webcams either comes from vision() or is built after releaseCamera().
+ */
+public class RobotSession {
+
+    private static HardwareMapConfig hw;
+    private static VisionBudget vision;
+
+    // true if the last hardware() call reused the session
+    private static boolean reused = false;
+
+    private RobotSession() {
+    }
+
+    // replaces "new HardwareMapConfig(hardwareMap, resetPose)" in OpMode init
+    public static synchronized HardwareMapConfig hardware(HardwareMap map, boolean resetPose) {
+        if (hw != null && hw.isValidFor(map)) {
+            hw.startOpMode();
+            if (resetPose) {
+                hw.pinpoint.resetPosAndIMU();
+            }
+            reused = true;
+            return hw;
+        }
+
+        if (hw != null) {
+            RobotLog.ii("RobotSession", "configuration changed, rebuilding hardware");
+            teardown();
+        }
+        hw = new HardwareMapConfig(map, resetPose);
+        reused = false;
+        return hw;
+    }
+
+    // the webcam portal for this session, opened on first use
+    public static synchronized VisionBudget vision(HardwareMapConfig config) {
+        if (vision != null && vision.isUsable() && config == hw) {
+            vision.resume();
+            return vision;
+        }
+        if (vision != null) {
+            vision.close();
+        }
+        vision = new VisionBudget(config);
+        return vision;
+    }
+
+    // an OpMode that opens the webcams itself calls this first, one camera can't have two portals
+    public static synchronized void releaseCamera() {
+        if (vision != null) {
+            vision.close();
+            vision = null;
+        }
+    }
+
+    public static synchronized boolean wasReused() {
+        return reused;
+    }
+
+    public static synchronized void teardown() {
+        if (vision != null) {
+            vision.close();
+            vision = null;
+        }
+        hw = null;
+        reused = false;
+    }
+}
@@ -0,0 +1,164 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import org.firstinspires.ftc.teamcode.control.ServoModel;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
+/*
+Measures how long the feeder / stopper servos really take to move, for ServoModel.
+
+Fixture: a limit switch ("servo_fixture", touch sensor on a digital port) placed so the
+servo horn presses it right at position 1.0. Each trial parks the servo at a start
+position, commands 1.0 and times how long the switch takes to close. Starting from
+several positions gives travel time against distance; the straight line fit through
+those is the dead time (intercept) and the full sweep time (slope).
+
+Do this with the servo in the robot, moving its real linkage (without a ball).
+
+GAMEPAD:
+dpad left / right - pick the servo
+a                 - run the trials
+right bumper      - save the result
+ */
+@StaticOpMode(name = "servo timing calibration")
+public class ServoTimingCalibration extends LinearOpMode {
+
+    // TUNE THESE
+    private static final double[] START_POSITIONS = {0.0, 0.25, 0.5, 0.75};
+    private static final int TRIALS = 5;              // per start position
+    private static final long SETTLE_MS = 800;        // parked long enough to be still
+    private static final long TIMEOUT_MS = 2000;      // switch never closed = fixture problem
+    private static final double SWITCH_EARLY_MS = 10; // the switch closes a little before the end of travel
+
+    private HardwareMapConfig hw;
+    private ServoModel[] servos;
+    private int selected = 0;
+
+    // last run
+    private double fitDeadMs = -1;
+    private double fitMsPerUnit = -1;
+    private double worstResidualMs = 0;
+    private String status = "A to run";
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        hw = RobotSession.hardware(hardwareMap, true);
+        servos = new ServoModel[] {
+                ServoModel.load(hw.feeder_servo, "feeder_servo"),
+                ServoModel.load(hw.stopper_servo, "stopper_servo")
+        };
+
+        if (hw.servo_fixture == null) {
+            telemetry.addLine("No \"servo_fixture\" touch sensor in the config, add it and restart");
+            telemetry.update();
+            waitForStart();
+            return;
+        }
+
+        telemetry.addData("Status", "Init completed");
+        telemetry.update();
+        waitForStart();
+
+        boolean lastLeft = false, lastRight = false, lastA = false, lastRB = false;
+        while (opModeIsActive()) {
+            if (gamepad1.dpad_right && !lastRight) select(1);
+            if (gamepad1.dpad_left && !lastLeft) select(-1);
+            if (gamepad1.a && !lastA) runTrials(servos[selected]);
+            if (gamepad1.right_bumper && !lastRB && fitDeadMs >= 0) {
+                servos[selected].setTiming(fitDeadMs, fitMsPerUnit);
+                servos[selected].save();
+                status = "saved";
+            }
+            lastLeft = gamepad1.dpad_left;
+            lastRight = gamepad1.dpad_right;
+            lastA = gamepad1.a;
+            lastRB = gamepad1.right_bumper;
+
+            ServoModel servo = servos[selected];
+            telemetry.addData("servo", "%s (dpad to change)", servo.getName());
+            telemetry.addData("current", "dead %.0f ms, full sweep %.0f ms", servo.getDeadMs(), servo.getMsPerUnit());
+            if (fitDeadMs >= 0) {
+                telemetry.addData("measured", "dead %.0f ms, full sweep %.0f ms (worst fit error %.0f ms)",
+                        fitDeadMs, fitMsPerUnit, worstResidualMs);
+            }
+            telemetry.addData("status", status);
+            telemetry.update();
+            idle();
+        }
+    }
+
+    private void select(int step) {
+        selected = (selected + step + servos.length) % servos.length;
+        fitDeadMs = -1;
+        status = "A to run";
+    }
+
+    // times every start position, then least squares fit of ms against distance
+    private void runTrials(ServoModel model) {
+        Servo servo = model.getServo();
+        int n = START_POSITIONS.length * TRIALS;
+        double[] distance = new double[n];
+        double[] ms = new double[n];
+        int count = 0;
+
+        for (int trial = 0; trial < TRIALS; trial++) {
+            for (double start : START_POSITIONS) {
+                if (!opModeIsActive()) return;
+                status = String.format("trial %d / %d", count + 1, n);
+                telemetry.addData("status", status);
+                telemetry.update();
+
+                servo.setPosition(start);
+                sleep(SETTLE_MS);
+                if (switchClosed()) {
+                    status = "switch closed at " + start + ", move the fixture closer to 1.0";
+                    return;
+                }
+
+                long t0 = System.nanoTime();
+                servo.setPosition(1.0);
+                while (!switchClosed()) {
+                    if ((System.nanoTime() - t0) / 1e6 > TIMEOUT_MS || !opModeIsActive()) {
+                        status = "switch never closed, check the fixture";
+                        servo.setPosition(0);
+                        return;
+                    }
+                }
+                distance[count] = 1.0 - start;
+                ms[count] = (System.nanoTime() - t0) / 1e6 + SWITCH_EARLY_MS;
+                count++;
+            }
+        }
+        servo.setPosition(0);
+        fit(distance, ms, count);
+        status = "done, right bumper to save";
+    }
+
+    private void fit(double[] x, double[] y, int n) {
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (int i = 0; i < n; i++) {
+            sx += x[i];
+            sy += y[i];
+            sxx += x[i] * x[i];
+            sxy += x[i] * y[i];
+        }
+        double slope = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+        double intercept = (sy - slope * sx) / n;
+
+        worstResidualMs = 0;
+        for (int i = 0; i < n; i++) {
+            worstResidualMs = Math.max(worstResidualMs, Math.abs(y[i] - (intercept + slope * x[i])));
+        }
+        // a servo can't arrive before it was told to move
+        fitDeadMs = Math.max(0, intercept);
+        fitMsPerUnit = slope;
+    }
+
+    // digital ports are in the bulk read, so each poll needs a fresh one
+    private boolean switchClosed() {
+        hw.clearBulkCache();
+        return hw.servo_fixture.isPressed();
+    }
+}
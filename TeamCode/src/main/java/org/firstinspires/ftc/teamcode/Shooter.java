@@ -4,19 +4,31 @@ import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.Gamepad;
-import com.qualcomm.robotcore.hardware.Servo;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.firstinspires.ftc.teamcode.control.Feedforward;
+import org.firstinspires.ftc.teamcode.control.PIDFController;
+import org.firstinspires.ftc.teamcode.control.ServoModel;
 
 /*
 GAMEPAD:
 x button - triggers shooting sequence
+
+flywheel speed and feeder timing come from ShotTable using the goal distance
+passed in through setTargetDistance()
+
+servo waits come from ServoModel (calibrated travel time), not fixed delays
+
+while the driver is aiming (Drivetrain right trigger) balls are only fed once the aim has
+settled, see setAimReady()
 */
 
 public class Shooter {
 
     private DcMotorEx shooterMotor0, shooterMotor1;
-    private Servo feederServo, stopperServo;
+    private ServoModel feeder, stopper;
+    private PowerArbiter arbiter; // null = no current budget
 
     // loop2
     private boolean lastX = false;
@@ -39,89 +51,131 @@ public class Shooter {
 //    private boolean lastX = false;
     public boolean shootingCurrently = false;
     private int shotsRemaining = 0;
+
+    // distance based shooting
+    private ShotTable shotTable;
+    private double targetDistance = 0;   // mm to the goal
+    private double targetVelocity = 0;   // ticks per second
+    private long feedMs = 300;           // longest wait for the flywheel to recover between shots
+    private double velocityTolerance = 50; // ticks per second either side of target
+    private boolean aimReady = true;       // false while the drivetrain is still turning onto the goal
+
+    // flywheel velocity control, one pid per motor
+    // TUNE THESE
+    private Feedforward flywheelFeedforward = new Feedforward(0.05, 1.0 / 2600, 0);
+    private PIDFController flywheel0Controller = new PIDFController(0.002, 0.0005, 0, 0)
+            .setDerivativeFilter(0.2).setIntegralLimit(0.15).setOutputLimits(-1, 1);
+    private PIDFController flywheel1Controller = new PIDFController(0.002, 0.0005, 0, 0)
+            .setDerivativeFilter(0.2).setIntegralLimit(0.15).setOutputLimits(-1, 1);
+    // the feeder is slower while it pushes a ball into the flywheels
+    private static final double FEEDER_LOAD = 1.3;
+
+    // pre-spin
+    private double idleVelocity = 0;     // ticks per second held while not shooting
+    private int volleyCount = 0;
+    private long totalSpinUpMs = 0;      // time spent in SPINNING_UP over all volleys
+    private double warmUpSink = 0;       // keeps warm-up results live so they aren't optimised away
     // MAIN METHODS
 
     // constructor method
     public Shooter(HardwareMapConfig hw) {
         shooterMotor0 = hw.shooter_motor_0;
         shooterMotor1 = hw.shooter_motor_1;
-        feederServo = hw.feeder_servo;
-        stopperServo = hw.stopper_servo;
+        feeder = ServoModel.load(hw.feeder_servo, "feeder_servo");
+        stopper = ServoModel.load(hw.stopper_servo, "stopper_servo");
+
+        // flywheels used to run at -1.0 power, reversing them lets velocities stay positive
+        shooterMotor0.setDirection(DcMotorSimple.Direction.REVERSE);
+        shooterMotor1.setDirection(DcMotorSimple.Direction.REVERSE);
+        // our own velocity loop sets the power, the encoders are only read
+        shooterMotor0.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        shooterMotor1.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+
+        shotTable = ShotTable.load();
+        setTargetDistance(shotTable.distanceAt(0));
+
+        // a servo model that has never been commanded never reports arrived, and READY waits on both,
+        // so a volley started before the first IDLE pass (auto plan opening with shoot) would hang
+        feeder.setPosition(0);
+        stopper.setPosition(0);
     }
 
     // main loop called 50 times per second
-//    public void loop(Gamepad gp) {
-//        // check if x just pressed
-//        if(gp.x && !lastX) {
-//            if (state == ShootState.IDLE) {
-//                startShootingSequence();
-//            }
-//        }
-//        lastX = gp.x;
-//
-//        // state machine
-//        switch (state) {
-//            // not shooting
-//            case IDLE:
-//                // change power here if motors running at low speed when idle
-//                shooterMotor0.setPower(0);
-//                shooterMotor1.setPower(0);
-//                stopperServo.setPosition(0);
-//                feederServo.setPosition(0);
-//                break;
-//
-//            // get shooter motors up to speed
-//            case SPINNING_UP:
-//                shooterMotor0.setPower(-1.0);
-//                shooterMotor1.setPower(-1.0);
-//
-//                // assumes spin up takes 1.5s
-//                if (timeElapsed(1500)) {
-//                    state = ShootState.READY;
-//                    stateStartTime = System.currentTimeMillis();
-//                }
-//                break;
-//
-//            // open stopper, ready to shoot
-//            case READY:
-//                stopperServo.setPosition(1);
-//                // assumes 0.3 second servo movement
-//                if (timeElapsed(300)) {
-//                    state = ShootState.FEEDING;
-//                    stateStartTime = System.currentTimeMillis();
-//                }
-//                break;
-//
-//            // servo arm pushes 3 balls
-//            case FEEDING:
-//                feederServo.setPosition(1);
-//                // assumes 0.3 second servo movement
-//                if (timeElapsed(300)) {
-//                    feederServo.setPosition(0);
-//                    shotsRemaining -= 1;
-//                    // if 3 balls been shot
-//                    if (shotsRemaining > 0) {
-//                        state = ShootState.READY;
-//                        stateStartTime = System.currentTimeMillis();
-//                    }
-//                    else { // still more balls to shoot
-//                        state = ShootState.DONE;
-//                        stateStartTime = System.currentTimeMillis();
-//                    }
-//                }
-//                break;
-//
-//            // shooting sequence completed
-//            case DONE:
-//                // close stopper
-//                stopperServo.setPosition(0);
-//                if (timeElapsed(300)) {
-//                    shootingCurrently = false;
-//                    state = ShootState.IDLE;
-//                }
-//                break;
-//        }
-//    }
+    public void loop(Gamepad gp) {
+        // check if x just pressed (no gamepad in auto)
+        if (gp != null) {
+            if (gp.x && !lastX) {
+                if (state == ShootState.IDLE) {
+                    startShootingSequence();
+                }
+            }
+            lastX = gp.x;
+        }
+
+        // state machine
+        switch (state) {
+            // not shooting
+            case IDLE:
+                // idle velocity comes from the pre-spin policy, 0 = off
+                holdIdleVelocity();
+                stopper.setPosition(0);
+                feeder.setPosition(0);
+                break;
+
+            // get shooter motors up to the speed for this distance
+            case SPINNING_UP:
+                setFlywheelVelocity(targetVelocity);
+
+                // ready once both wheels are at speed, 1.5s is the old fixed wait as a fallback
+                if (atTargetVelocity() || timeElapsed(1500)) {
+                    volleyCount++;
+                    totalSpinUpMs += System.currentTimeMillis() - stateStartTime;
+                    state = ShootState.READY;
+                    stateStartTime = System.currentTimeMillis();
+                }
+                break;
+
+            // open stopper, ready to shoot once the stopper is open, the feeder is back
+            // and the flywheels have recovered from the last shot
+            case READY:
+                setFlywheelVelocity(targetVelocity);
+                stopper.setPosition(1);
+                if (aimReady && stopper.isArrived() && feeder.isArrived() && (atTargetVelocity() || timeElapsed(feedMs))) {
+                    state = ShootState.FEEDING;
+                    stateStartTime = System.currentTimeMillis();
+                }
+                break;
+
+            // servo arm pushes 3 balls
+            case FEEDING:
+                setFlywheelVelocity(targetVelocity);
+                feeder.setPosition(1, FEEDER_LOAD);
+                if (feeder.isArrived()) {
+                    feeder.setPosition(0);
+                    shotsRemaining -= 1;
+                    // still more balls to shoot
+                    if (shotsRemaining > 0) {
+                        state = ShootState.READY;
+                        stateStartTime = System.currentTimeMillis();
+                    }
+                    else { // if 3 balls been shot
+                        state = ShootState.DONE;
+                        stateStartTime = System.currentTimeMillis();
+                    }
+                }
+                break;
+
+            // shooting sequence completed
+            case DONE:
+                // close stopper
+                stopper.setPosition(0);
+                if (stopper.isArrived() && feeder.isArrived()) {
+                    shootingCurrently = false;
+                    state = ShootState.IDLE;
+                }
+                break;
+        }
+    }
 
     public void loop2(Gamepad gp) {
         if (gp == null) return;
@@ -132,18 +186,22 @@ public class Shooter {
         }
 
         if (flywheelOn) {
-            shooterMotor0.setPower(-1.0);
-            shooterMotor1.setPower(-1.0);
+            setFlywheelVelocity(targetVelocity);
         } else {
-            shooterMotor0.setPower(0.0);
-            shooterMotor1.setPower(0.0);
+            holdIdleVelocity();
         }
 
         // Y starts feeder pulse
 
 
         if (gp.y && !lastY) {
-            feederServo.setPosition(1.0);   // push out
+            feeder.setPosition(1.0, FEEDER_LOAD);   // push out
+            feederMoving = true;
+        }
+        // bring it back as soon as it has pushed
+        if (feederMoving && feeder.isArrived()) {
+            feeder.setPosition(0);
+            feederMoving = false;
         }
 
 
@@ -151,14 +209,18 @@ public class Shooter {
         lastY = gp.y;
     }
     public void updateTelemetry(Telemetry t) {
-
+        t.addData("shooter state", aimReady ? state.toString() : state + " (waiting for aim)");
+        t.addData("goal distance", "%.0f mm", targetDistance);
+        t.addData("flywheel target/actual", "%.0f / %.0f", targetVelocity, shooterMotor0.getVelocity());
     }
 
     public void stop() {
         shooterMotor0.setPower(0);
         shooterMotor1.setPower(0);
-        feederServo.setPosition(0);  // safe position
-        stopperServo.setPosition(0); // safe position
+        flywheel0Controller.reset();
+        flywheel1Controller.reset();
+        feeder.setPosition(0);  // safe position
+        stopper.setPosition(0); // safe position
     }
 
     // HELPER METHODS
@@ -171,6 +233,126 @@ public class Shooter {
         shootingCurrently = true;
     }
 
+    // call every loop with the latest goal distance so the flywheels are already at the right speed
+    public void setTargetDistance(double distanceMm) {
+        targetDistance = distanceMm;
+        targetVelocity = shotTable.velocityFor(distanceMm);
+        feedMs = Math.round(shotTable.feedMsFor(distanceMm));
+    }
+
+    // call every loop, true when not aiming or the aim has settled (auto never calls it)
+    public void setAimReady(boolean ready) {
+        aimReady = ready;
+    }
+
+    public double getTargetVelocity() {
+        return targetVelocity;
+    }
+
+    public ShotTable getShotTable() {
+        return shotTable;
+    }
+
+    // set every loop by FlywheelPreSpin, capped at the shooting velocity
+    public void setIdleVelocity(double ticksPerSecond) {
+        idleVelocity = Math.max(0, Math.min(ticksPerSecond, targetVelocity));
+    }
+
+    public int getVolleyCount() {
+        return volleyCount;
+    }
+
+    public long getTotalSpinUpMs() {
+        return totalSpinUpMs;
+    }
+
+    // both flywheels together
+    public double getFlywheelCurrent() {
+        return shooterMotor0.getCurrent(CurrentUnit.AMPS) + shooterMotor1.getCurrent(CurrentUnit.AMPS);
+    }
+
+    public void setPowerArbiter(PowerArbiter arbiter) {
+        this.arbiter = arbiter;
+    }
+
+    public ServoModel getFeeder() {
+        return feeder;
+    }
+
+    public ServoModel getStopper() {
+        return stopper;
+    }
+
+    public boolean isFeeding() {
+        return state == ShootState.READY || state == ShootState.FEEDING;
+    }
+
+    public double getFlywheelVelocity() {
+        return shooterMotor0.getVelocity();
+    }
+
+    public boolean atTargetVelocity() {
+        return Math.abs(shooterMotor0.getVelocity() - targetVelocity) < velocityTolerance
+                && Math.abs(shooterMotor1.getVelocity() - targetVelocity) < velocityTolerance;
+    }
+
+    private void holdIdleVelocity() {
+        if (idleVelocity > 0) {
+            setFlywheelVelocity(idleVelocity);
+        } else {
+            shooterMotor0.setPower(0);
+            shooterMotor1.setPower(0);
+            flywheel0Controller.reset();
+            flywheel1Controller.reset();
+        }
+    }
+
+    // feedforward does most of the work, the pid trims out load and battery sag
+    private void setFlywheelVelocity(double ticksPerSecond) {
+        double velocity0 = shooterMotor0.getVelocity();
+        double velocity1 = shooterMotor1.getVelocity();
+        double power0 = computeFlywheelPower(ticksPerSecond, velocity0, flywheel0Controller);
+        double power1 = computeFlywheelPower(ticksPerSecond, velocity1, flywheel1Controller);
+
+        // second priority for battery current, after the drivetrain
+        if (arbiter != null) {
+            arbiter.request(PowerArbiter.Load.FLYWHEEL, power0, velocity0);
+            arbiter.request(PowerArbiter.Load.FLYWHEEL, power1, velocity1);
+            double scale = arbiter.scale(PowerArbiter.Load.FLYWHEEL);
+            power0 *= scale;
+            power1 *= scale;
+        }
+        shooterMotor0.setPower(power0);
+        shooterMotor1.setPower(power1);
+    }
+
+    // package-private for HotPathAllocationTest
+    double computeFlywheelPower(double ticksPerSecond, double velocity, PIDFController controller) {
+        return clip(flywheelFeedforward.calculate(ticksPerSecond) + controller.calculate(ticksPerSecond, velocity));
+    }
+
+    // runs the shot table lookups and flywheel maths on made up distances / velocities so ART
+    // has compiled them before the first real loop, nothing is written to the motors or servos
+    public void warmUp(int iterations) {
+        double range = Math.max(1, shotTable.distanceAt(shotTable.size() - 1) - shotTable.distanceAt(0));
+        double sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            double distance = shotTable.distanceAt(0) + (i % 100) / 100.0 * range;
+            double velocity = shotTable.velocityFor(distance);
+            sink += shotTable.feedMsFor(distance);
+            sink += computeFlywheelPower(velocity, velocity * 0.9, flywheel0Controller);
+            sink += computeFlywheelPower(velocity, velocity * 1.05, flywheel1Controller);
+        }
+        flywheel0Controller.reset();
+        flywheel1Controller.reset();
+        warmUpSink = sink;
+    }
+
+    private double clip(double power) {
+        // never drive the flywheels backwards to slow them down
+        return Math.max(0, Math.min(1, power));
+    }
+
     // check how long current state has been active
     public boolean timeElapsed(long ms) {
         return System.currentTimeMillis() - stateStartTime >= ms;
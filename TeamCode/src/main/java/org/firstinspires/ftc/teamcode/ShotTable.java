@@ -0,0 +1,278 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.ReadWriteFile;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * ShotTable — maps distance to the goal onto flywheel velocity and feeder timing.
+ *
+ * Rows are kept in sorted primitive arrays so a lookup is one binary search and an
+ * interpolation, with no allocation. The table lives in the robot controller settings
+ * folder as a small csv (distance_mm,velocity_tps,feed_ms) so it can be tuned on the
+ * field with ShotTableTuner and survives restarts.
+ */
+public class ShotTable {
+
+    public enum Interpolation {
+        LINEAR, SPLINE
+    }
+
+    public static final String FILE_NAME = "shot_table.csv";
+
+    // used until a tuned table has been saved
+    // CHANGE THESE AFTER TESTING
+    private static final double[] DEFAULT_DISTANCE_MM = {600, 1200, 1800, 2400, 3000};
+    private static final double[] DEFAULT_VELOCITY    = {1300, 1500, 1700, 1900, 2100};
+    private static final double[] DEFAULT_FEED_MS     = {300, 300, 300, 300, 300};
+
+    private double[] distanceMm;
+    private double[] velocity;
+    private double[] feedMs;
+
+    // hermite tangents for the spline, rebuilt whenever the rows change
+    private double[] velocitySlope;
+
+    private Interpolation interpolation = Interpolation.SPLINE;
+
+    public ShotTable() {
+        setRows(DEFAULT_DISTANCE_MM.clone(), DEFAULT_VELOCITY.clone(), DEFAULT_FEED_MS.clone());
+    }
+
+    // loads the saved table, falling back to the defaults
+    public static ShotTable load() {
+        ShotTable table = new ShotTable();
+        File file = AppUtil.getInstance().getSettingsFile(FILE_NAME);
+        if (file.exists()) {
+            try {
+                table.parse(ReadWriteFile.readFile(file));
+            } catch (RuntimeException e) {
+                RobotLog.ee("ShotTable", e, "bad %s, using defaults", FILE_NAME);
+                table = new ShotTable();
+            }
+        }
+        return table;
+    }
+
+    public void save() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            sb.append(String.format(Locale.US, "%.0f,%.0f,%.0f%n", distanceMm[i], velocity[i], feedMs[i]));
+        }
+        ReadWriteFile.writeFile(AppUtil.getInstance().getSettingsFile(FILE_NAME), sb.toString());
+    }
+
+    // LOOKUP
+
+    public double velocityFor(double distance) {
+        int n = size();
+        if (distance <= distanceMm[0]) return velocity[0];
+        if (distance >= distanceMm[n - 1]) return velocity[n - 1];
+
+        int i = segment(distance);
+        double h = distanceMm[i + 1] - distanceMm[i];
+        double t = (distance - distanceMm[i]) / h;
+
+        if (interpolation == Interpolation.LINEAR) {
+            return velocity[i] + t * (velocity[i + 1] - velocity[i]);
+        }
+
+        // cubic hermite
+        double t2 = t * t;
+        double t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * velocity[i]
+                + (t3 - 2 * t2 + t) * h * velocitySlope[i]
+                + (-2 * t3 + 3 * t2) * velocity[i + 1]
+                + (t3 - t2) * h * velocitySlope[i + 1];
+    }
+
+    // feeder timing is always linear, a curve buys nothing for a servo wait
+    public double feedMsFor(double distance) {
+        int n = size();
+        if (distance <= distanceMm[0]) return feedMs[0];
+        if (distance >= distanceMm[n - 1]) return feedMs[n - 1];
+
+        int i = segment(distance);
+        double t = (distance - distanceMm[i]) / (distanceMm[i + 1] - distanceMm[i]);
+        return feedMs[i] + t * (feedMs[i + 1] - feedMs[i]);
+    }
+
+    // EDITING
+
+    // adds a row, or replaces the row already at that distance
+    public void put(double distance, double vel, double feed) {
+        int n = size();
+        int index = indexOf(distance);
+        if (index >= 0) {
+            velocity[index] = vel;
+            feedMs[index] = feed;
+            buildSlopes();
+            return;
+        }
+
+        int insert = -(index + 1);
+        double[] d = new double[n + 1];
+        double[] v = new double[n + 1];
+        double[] f = new double[n + 1];
+        for (int i = 0, j = 0; i <= n; i++) {
+            if (i == insert) {
+                d[i] = distance;
+                v[i] = vel;
+                f[i] = feed;
+            } else {
+                d[i] = distanceMm[j];
+                v[i] = velocity[j];
+                f[i] = feedMs[j];
+                j++;
+            }
+        }
+        setRows(d, v, f);
+    }
+
+    public void remove(double distance) {
+        int index = indexOf(distance);
+        int n = size();
+        if (index < 0 || n <= 2) return; // keep at least one segment
+
+        double[] d = new double[n - 1];
+        double[] v = new double[n - 1];
+        double[] f = new double[n - 1];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (i == index) continue;
+            d[j] = distanceMm[i];
+            v[j] = velocity[i];
+            f[j] = feedMs[i];
+            j++;
+        }
+        setRows(d, v, f);
+    }
+
+    public void setInterpolation(Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public int size() {
+        return distanceMm.length;
+    }
+
+    public double distanceAt(int i) {
+        return distanceMm[i];
+    }
+
+    public double velocityAt(int i) {
+        return velocity[i];
+    }
+
+    public double feedMsAt(int i) {
+        return feedMs[i];
+    }
+
+    // HELPER METHODS
+
+    // binary search for the row i with distanceMm[i] <= distance < distanceMm[i + 1]
+    private int segment(double distance) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (distanceMm[mid] <= distance) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // same contract as Arrays.binarySearch, rows closer than 1mm count as equal
+    private int indexOf(double distance) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            double diff = distanceMm[mid] - distance;
+            if (Math.abs(diff) < 1) return mid;
+            if (diff < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private void parse(String text) {
+        String[] lines = text.trim().split("\n");
+        double[] d = new double[lines.length];
+        double[] v = new double[lines.length];
+        double[] f = new double[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            String[] parts = lines[i].trim().split(",");
+            d[i] = Double.parseDouble(parts[0]);
+            v[i] = Double.parseDouble(parts[1]);
+            f[i] = Double.parseDouble(parts[2]);
+            if (i > 0 && d[i] <= d[i - 1]) {
+                throw new IllegalArgumentException("rows must be sorted by distance");
+            }
+        }
+        if (lines.length < 2) {
+            throw new IllegalArgumentException("need at least two rows");
+        }
+        setRows(d, v, f);
+    }
+
+    private void setRows(double[] d, double[] v, double[] f) {
+        distanceMm = d;
+        velocity = v;
+        feedMs = f;
+        velocitySlope = new double[d.length];
+        buildSlopes();
+    }
+
+    // monotone (fritsch-carlson) tangents so the spline never overshoots between rows
+    private void buildSlopes() {
+        int n = size();
+        double[] m = velocitySlope;
+
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                m[i] = secant(0);
+            } else if (i == n - 1) {
+                m[i] = secant(n - 2);
+            } else {
+                double a = secant(i - 1);
+                double b = secant(i);
+                m[i] = (a * b <= 0) ? 0 : (a + b) / 2;
+            }
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            double s = secant(i);
+            if (s == 0) {
+                m[i] = 0;
+                m[i + 1] = 0;
+                continue;
+            }
+            double a = m[i] / s;
+            double b = m[i + 1] / s;
+            double r = a * a + b * b;
+            if (r > 9) {
+                double k = 3 / Math.sqrt(r);
+                m[i] = k * a * s;
+                m[i + 1] = k * b * s;
+            }
+        }
+    }
+
+    private double secant(int i) {
+        return (velocity[i + 1] - velocity[i]) / (distanceMm[i + 1] - distanceMm[i]);
+    }
+}
@@ -0,0 +1,144 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.firstinspires.ftc.teamcode.mechanisms.VisionBudget;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
+/*
+Drive to a spot, spin up, shoot, and nudge the row for the current distance until shots go in.
+
+The distance is the goal tag range when the camera sees it, same as teleop shoots with. Without
+the tag the odometry distance is only used once the pose is in the field frame, until then the
+buttons that write rows are ignored (the placeholder goal position would key rows on nonsense).
+
+GAMEPAD:
+sticks          - drive as normal (b and right trigger too, the d pad only edits the table)
+x               - flywheel on / off (at the table velocity for this distance)
+y               - feeder pulse
+dpad up / down  - +/- 25 ticks/s at this distance
+dpad right/left - +/- 20 ms feed time at this distance
+left bumper     - delete the row nearest this distance
+right bumper    - save table to the control hub
+ */
+@StaticOpMode(name = "shot table tuner")
+public class ShotTableTuner extends OpMode {
+
+    private HardwareMapConfig hw;
+    private Drivetrain drivetrain;
+    private Shooter shooter;
+    private ShotTable table;
+    private VisionBudget vision;
+
+    private boolean lastUp, lastDown, lastLeft, lastRight, lastLB, lastRB;
+    private boolean saved = false;
+
+    // what the drivetrain sees, the d pad stays here so an edit doesn't also toggle precision
+    private final Gamepad drivePad = new Gamepad();
+
+    @Override
+    public void init() {
+        hw = RobotSession.hardware(hardwareMap, true);
+        drivetrain = new Drivetrain(hw);
+        shooter = new Shooter(hw);
+        table = shooter.getShotTable();
+        vision = RobotSession.vision(hw);
+
+        telemetry.addData("Status", "Init completed");
+        telemetry.update();
+    }
+
+    @Override
+    public void loop() {
+        hw.clearBulkCache();
+        drivetrain.loop(driveOnly(gamepad1));
+        // tuning is all aiming at the goal, take every frame
+        vision.update(VisionBudget.RobotMode.ALIGNING);
+
+        double tagRange = vision.getGoalRangeMm();
+        boolean known = tagRange > 0 || drivetrain.isFieldLocalized();
+        double distance = tagRange > 0 ? tagRange : drivetrain.distanceToGoal();
+        double velocity = table.velocityFor(distance);
+        double feed = table.feedMsFor(distance);
+
+        // each edit writes a row at the current distance, so it takes effect straight away
+        if (known) {
+            if (gamepad1.dpad_up && !lastUp) edit(distance, velocity + 25, feed);
+            if (gamepad1.dpad_down && !lastDown) edit(distance, velocity - 25, feed);
+            if (gamepad1.dpad_right && !lastRight) edit(distance, velocity, feed + 20);
+            if (gamepad1.dpad_left && !lastLeft) edit(distance, velocity, Math.max(0, feed - 20));
+
+            if (gamepad1.left_bumper && !lastLB) {
+                table.remove(nearestRow(distance));
+                saved = false;
+            }
+        }
+        if (gamepad1.right_bumper && !lastRB) {
+            table.save();
+            saved = true;
+        }
+
+        lastUp = gamepad1.dpad_up;
+        lastDown = gamepad1.dpad_down;
+        lastLeft = gamepad1.dpad_left;
+        lastRight = gamepad1.dpad_right;
+        lastLB = gamepad1.left_bumper;
+        lastRB = gamepad1.right_bumper;
+
+        // without a distance the flywheel keeps the last target
+        if (known) {
+            shooter.setTargetDistance(distance);
+        }
+        shooter.loop2(gamepad1);
+
+        if (tagRange > 0) {
+            telemetry.addData("distance", "%.0f mm (goal tag)", distance);
+        } else if (known) {
+            telemetry.addData("distance", "%.0f mm (odometry)", distance);
+        } else {
+            telemetry.addData("distance", "unknown, no goal tag and pose not in the field frame, edits ignored");
+        }
+        telemetry.addData("velocity / feed", "%.0f / %.0f ms", shooter.getTargetVelocity(), feed);
+        telemetry.addData("saved", saved ? "yes" : "NO");
+        for (int i = 0; i < table.size(); i++) {
+            telemetry.addData("row " + i, "%.0f mm  %.0f  %.0f ms",
+                    table.distanceAt(i), table.velocityAt(i), table.feedMsAt(i));
+        }
+        shooter.updateTelemetry(telemetry);
+        telemetry.update();
+    }
+
+    @Override
+    public void stop() {
+        drivetrain.stop();
+        shooter.stop();
+        vision.stop();
+    }
+
+    private Gamepad driveOnly(Gamepad gp) {
+        drivePad.left_stick_x = gp.left_stick_x;
+        drivePad.left_stick_y = gp.left_stick_y;
+        drivePad.right_stick_x = gp.right_stick_x;
+        drivePad.right_trigger = gp.right_trigger;
+        drivePad.b = gp.b;
+        drivePad.back = gp.back;
+        return drivePad;
+    }
+
+    // rows snap to 50mm so small odometry drift edits the same row instead of adding new ones
+    private void edit(double distance, double velocity, double feed) {
+        table.put(Math.round(distance / 50) * 50, velocity, feed);
+        saved = false;
+    }
+
+    private double nearestRow(double distance) {
+        double best = table.distanceAt(0);
+        for (int i = 1; i < table.size(); i++) {
+            if (Math.abs(table.distanceAt(i) - distance) < Math.abs(best - distance)) {
+                best = table.distanceAt(i);
+            }
+        }
+        return best;
+    }
+}
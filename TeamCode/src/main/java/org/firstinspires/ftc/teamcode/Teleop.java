@@ -1,46 +1,198 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
-import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 
-@TeleOp(name = "new teleop")
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+
+import org.firstinspires.ftc.teamcode.mechanisms.VisionBudget;
+import org.firstinspires.ftc.teamcode.util.AllocationTracker;
+import org.firstinspires.ftc.teamcode.util.LoopDeadline;
+import org.firstinspires.ftc.teamcode.util.MatchRecorder;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+import org.firstinspires.ftc.teamcode.util.TelemetryStream;
+
+@StaticOpMode(name = "new teleop")
 public class Teleop extends OpMode {
 
+    // counts allocations per subsystem each loop, turn on to hunt down gc pauses
+    private static final boolean TRACK_ALLOCATIONS = false;
+    // loop period budget, sustained overruns shed telemetry, then vision, then sensor reads
+    private static final double LOOP_BUDGET_MS = 20;
+    // binary stream to tools/telemetry_viewer.py on the laptop, for tuning sessions only
+    private static final boolean STREAM_TELEMETRY = false;
+    // drive / shooter maths and the subsystem loops run this many times in init so ART has compiled them,
+    // 0 = off (the before run when comparing the first loop times)
+    private static final int WARM_UP_ITERATIONS = 3000;
+
     // hardware + subsystems
     private HardwareMapConfig hw;
     private Drivetrain drivetrain;
     private Intake intake;
     private Shooter shooter;
+    private BallCounter ballCounter;
+    private FlywheelPreSpin preSpin;
+    private VisionBudget vision;
+    private PowerArbiter power;
     // getting rid of turret...2
 
+    // allocation tracking
+    private AllocationTracker allocs;
+    // loop stats for this match, appended to the history file at stop
+    private MatchRecorder history;
+    private LoopDeadline deadline;
+    private double warmUpMs = 0;
+    // what auto left us, null if teleop was started on its own
+    private MatchHandoff handoff;
+
+    private int driveSection, intakeSection, shooterSection, counterSection, visionSection, telemetrySection;
+
+    // live stream, null unless STREAM_TELEMETRY
+    private TelemetryStream stream;
+    private int chX, chY, chHeading, chTargetX, chTargetY, chTargetHeading, chAutoMove;
+    private int chWheel0, chFlywheel0, chFlywheel1, chFlywheelTarget, chLoopMs, chBudget;
+
     @Override
     public void init() {
-        // initialisations
-        hw = new HardwareMapConfig((hardwareMap));
+        long initStart = System.nanoTime();
+
+        // a fresh handoff from auto means the pinpoint already knows where we are
+        handoff = MatchHandoff.take();
+
+        // initialisations (hardware and camera are reused from auto when possible)
+        hw = RobotSession.hardware(hardwareMap, handoff == null);
         drivetrain = new Drivetrain(hw);
         intake = new Intake(hw);
         shooter = new Shooter(hw);
+        ballCounter = new BallCounter(hw, intake, shooter);
+        preSpin = new FlywheelPreSpin(hw, shooter, ballCounter);
+        vision = RobotSession.vision(hw);
+
+        // one battery current budget, drive > flywheels > intake
+        power = new PowerArbiter(hw);
+        drivetrain.setPowerArbiter(power);
+        shooter.setPowerArbiter(power);
+        intake.setPowerArbiter(power);
         // getting rid of turret...2
 
+        if (handoff != null) {
+            handoff.restorePose(hw);
+            drivetrain.setFieldLocalized(handoff.fieldFrame); // auto set its field frame start pose
+            ballCounter.setCount(handoff.ballCount);
+            vision.setAlliance(handoff.alliance);
+        }
+
+        allocs = new AllocationTracker(TRACK_ALLOCATIONS);
+        history = new MatchRecorder("teleop", allocs, hw.battery);
+        driveSection = history.section("drivetrain");
+        intakeSection = history.section("intake");
+        shooterSection = history.section("shooter");
+        counterSection = history.section("ball counter");
+        visionSection = history.section("vision");
+        telemetrySection = history.section("telemetry");
+
+        deadline = new LoopDeadline(LOOP_BUDGET_MS);
+
+        // last, so nothing else in init is still being interpreted when start is pressed
+        long warmUpStart = System.nanoTime();
+        drivetrain.warmUp(WARM_UP_ITERATIONS);
+        shooter.warmUp(WARM_UP_ITERATIONS);
+        WarmUp.run(hw, WARM_UP_ITERATIONS);
+        warmUpMs = (System.nanoTime() - warmUpStart) / 1e6;
+
+        if (STREAM_TELEMETRY) {
+            startStream();
+        }
+
         telemetry.addData("Status", "Init completed");
+        telemetry.addData("Init", "%.0f ms (%s), warm-up %.0f ms", (System.nanoTime() - initStart) / 1e6,
+                RobotSession.wasReused() ? "session reused" : "fresh hardware", warmUpMs);
+        if (handoff == null) {
+            telemetry.addData("Auto handoff", "none, pose reset");
+        } else {
+            telemetry.addData("Auto handoff", "%s, %d balls, flywheel %.0f, pose kept",
+                    handoff.alliance, handoff.ballCount, handoff.flywheelVelocity);
+        }
         telemetry.update();
     }
 
     @Override
     public void loop() {
+        // fresh bulk read for this cycle
+        hw.clearBulkCache();
+        deadline.startCycle();
+
+        // least important reads go first when the loop can't keep up
+        boolean sensorsShed = deadline.isShed(LoopDeadline.Shed.SENSORS);
+        intake.setReducedSensing(sensorsShed);
+        preSpin.setReducedSensing(sensorsShed);
+        ballCounter.setReducedSensing(sensorsShed);
+
         // main loops for all subsystems
+        history.begin(driveSection);
+        // newest goal tag bearing from the last cycle, aim corrects it for the frame's age
+        if (vision.hasGoalBearing()) {
+            drivetrain.setGoalBearing(vision.getGoalBearingRad(), vision.getGoalFrameNanos());
+        }
         drivetrain.loop(gamepad1);
+        history.end(driveSection);
+
+        history.begin(intakeSection);
         intake.loop(gamepad1);
+        history.end(intakeSection);
+
         // getting rid of turret...2
+        history.begin(shooterSection);
+        double distance = goalDistance();
+        shooter.setTargetDistance(distance);
+        preSpin.loop(distance);
+        shooter.setAimReady(!drivetrain.hasAimTarget() || drivetrain.isAimSettled());
         shooter.loop(gamepad1);
+        history.end(shooterSection);
 
-        // update telemetry for all subsystems
-        drivetrain.updateTelemetry(telemetry);
-        intake.updateTelemetry(telemetry);
-        shooter.updateTelemetry(telemetry);
-//        drivetrain.updateTelemetry(telemetry);
-        telemetry.update();
+        history.begin(counterSection);
+        ballCounter.loop(gamepad1);
+        history.end(counterSection);
+
+        history.begin(visionSection);
+        if (deadline.isShed(LoopDeadline.Shed.VISION)) {
+            vision.shed();
+        } else {
+            vision.update(currentRobotMode());
+        }
+        history.end(visionSection);
+
+        // budget for next cycle from what everything asked for this cycle
+        power.loop();
 
+        // update telemetry for all subsystems (only a few times a second when shed)
+        history.begin(telemetrySection);
+        if (deadline.telemetryDue()) {
+            drivetrain.updateTelemetry(telemetry);
+            intake.updateTelemetry(telemetry);
+            shooter.updateTelemetry(telemetry);
+            ballCounter.updateTelemetry(telemetry);
+            preSpin.updateTelemetry(telemetry);
+            vision.updateTelemetry(telemetry);
+            power.updateTelemetry(telemetry);
+            allocs.updateTelemetry(telemetry);
+            deadline.updateTelemetry(telemetry);
+            telemetry.addData("first loop", "%.1f ms, worst of opening %.1f ms (warm-up %.0f ms)",
+                    history.getFirstLoopMs(), history.getOpeningWorstMs(), warmUpMs);
+            if (stream != null) {
+                telemetry.addData("stream", "%s, %d sent, %d dropped",
+                        stream.isConnected() ? "connected" : "waiting", stream.getSent(), stream.getDropped());
+            }
+//            drivetrain.updateTelemetry(telemetry);
+            telemetry.update();
+        }
+        history.end(telemetrySection);
+
+        if (stream != null) {
+            publishStream();
+        }
+
+        history.endCycle();
     }
 
     @Override
@@ -49,6 +201,100 @@ public class Teleop extends OpMode {
         drivetrain.stop();
         intake.stop();
         shooter.stop();
+        ballCounter.stop();
+        vision.stop();
+        power.stop();
+        allocs.stop();
+        if (stream != null) {
+            stream.stop();
+        }
+        saveHistory();
         // getting rid of turret...2
     }
+
+    // the numbers worth comparing between matches, on top of loop timing
+    private void saveHistory() {
+        for (VisionBudget.RobotMode mode : VisionBudget.RobotMode.values()) {
+            history.put("vision_fps_" + mode.name().toLowerCase(), vision.getAverageFps(mode));
+        }
+        history.put("warm_up_ms", warmUpMs);
+        history.put("loop_overruns", deadline.getTotalOverruns());
+        history.put("shed_events", deadline.getShedEvents());
+        history.put("telemetry_skipped", deadline.getSkippedTelemetry());
+        history.put("intake_jams", intake.getJamCount());
+        history.put("volleys", shooter.getVolleyCount());
+        history.put("min_volts", power.getMinVolts());
+        history.put("throttle_ms_drive", power.getThrottleMs(PowerArbiter.Load.DRIVE));
+        history.put("throttle_ms_flywheel", power.getThrottleMs(PowerArbiter.Load.FLYWHEEL));
+        history.put("throttle_ms_intake", power.getThrottleMs(PowerArbiter.Load.INTAKE));
+        history.save();
+    }
+
+    // channel names are what the viewer plots by, x / y / heading / target_* also draw the robot
+    private void startStream() {
+        stream = new TelemetryStream();
+        chX = stream.channel("x");
+        chY = stream.channel("y");
+        chHeading = stream.channel("heading");
+        chTargetX = stream.channel("target_x");
+        chTargetY = stream.channel("target_y");
+        chTargetHeading = stream.channel("target_heading");
+        chAutoMove = stream.channel("auto_move");
+        chWheel0 = stream.channel("power_ne");
+        stream.channel("power_se");
+        stream.channel("power_sw");
+        stream.channel("power_nw");
+        chFlywheel0 = stream.channel("flywheel_0");
+        chFlywheel1 = stream.channel("flywheel_1");
+        chFlywheelTarget = stream.channel("flywheel_target");
+        chLoopMs = stream.channel("loop_ms");
+        chBudget = stream.channel("budget_amps");
+        stream.start();
+        telemetry.addData("Stream", "port %d", stream.getPort());
+    }
+
+    // all of these come from this cycle's bulk read or cached fields, no extra hardware calls
+    private void publishStream() {
+        stream.set(chX, hw.pinpoint.getPosX(DistanceUnit.MM));
+        stream.set(chY, hw.pinpoint.getPosY(DistanceUnit.MM));
+        stream.set(chHeading, hw.pinpoint.getHeading(AngleUnit.RADIANS));
+        stream.set(chTargetX, drivetrain.getTargetX());
+        stream.set(chTargetY, drivetrain.getTargetY());
+        stream.set(chTargetHeading, drivetrain.getTargetHeading());
+        stream.set(chAutoMove, drivetrain.isAutoMoveActive() ? 1 : 0);
+        for (int i = 0; i < 4; i++) {
+            stream.set(chWheel0 + i, drivetrain.getWheelPower(i));
+        }
+        stream.set(chFlywheel0, hw.shooter_motor_0.getVelocity());
+        stream.set(chFlywheel1, hw.shooter_motor_1.getVelocity());
+        stream.set(chFlywheelTarget, shooter.getTargetVelocity());
+        stream.set(chLoopMs, deadline.getLastPeriodMs());
+        stream.set(chBudget, power.getBudgetAmps());
+        stream.publish();
+    }
+
+    // tag range is measured straight to the goal, fall back to the odometry pose when it's not visible
+    private double goalDistance() {
+        double tagRange = vision.getGoalRangeMm();
+        return tagRange > 0 ? tagRange : drivetrain.distanceToGoal();
+    }
+
+    // picks which vision work is worth paying for this loop
+    private VisionBudget.RobotMode currentRobotMode() {
+        // a volley needs the goal tag for range and bearing, and the driver stands still for it
+        if (drivetrain.isAutoMoveActive() || drivetrain.isAiming() || shooter.shootingCurrently) {
+            return VisionBudget.RobotMode.ALIGNING;
+        }
+        if (intake.isIntaking()) {
+            return VisionBudget.RobotMode.INTAKING;
+        }
+        // same dead zone as the drive, a stick inside it doesn't move the robot
+        double deadZone = drivetrain.getDeadZone();
+        boolean sticksMoving = Math.abs(gamepad1.left_stick_x) > deadZone
+                || Math.abs(gamepad1.left_stick_y) > deadZone
+                || Math.abs(gamepad1.right_stick_x) > deadZone;
+        // flywheels up to shooting speed = about to shoot, keep the goal range coming
+        boolean spunUp = preSpin.getLevel() == FlywheelPreSpin.Level.READY;
+        return sticksMoving || spunUp ? VisionBudget.RobotMode.DRIVING : VisionBudget.RobotMode.IDLE;
+    }
 }
\ No newline at end of file
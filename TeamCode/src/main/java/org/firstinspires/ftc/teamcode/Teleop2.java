@@ -1,12 +1,14 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
-import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.Servo;
 
+import org.firstinspires.ftc.teamcode.control.ServoModel;
+import org.firstinspires.ftc.teamcode.util.StaticOpMode;
+
 /*
  GAMEPAD (PS4):
    Left stick X/Y        — strafe / forward-back
@@ -18,7 +20,7 @@ import com.qualcomm.robotcore.hardware.Servo;
    L2 (left_trigger)     — shooter: both motors full power while fully held
 */
 
-@TeleOp(name = "Teleop2 - Manual")
+@StaticOpMode(name = "Teleop2 - Manual")
 public class Teleop2 extends OpMode {
 
     // --- drivetrain ---
@@ -36,6 +38,7 @@ public class Teleop2 extends OpMode {
 
     // --- servos ---
     private Servo feederServo, stopperServo;
+    private ServoModel feeder, stopper; // no feedback, so these say when a toggle has finished
     private boolean feederUp    = false;
     private boolean stopperOpen = false;
     private boolean lastCross    = false; // X / cross (a)  = feeder
@@ -67,6 +70,8 @@ public class Teleop2 extends OpMode {
 
         feederServo  = hardwareMap.get(Servo.class, "feeder_servo");
         stopperServo = hardwareMap.get(Servo.class, "stopper_servo");
+        feeder  = ServoModel.load(feederServo, "feeder_servo");
+        stopper = ServoModel.load(stopperServo, "stopper_servo");
 
         telemetry.addData("Status", "Ready");
         telemetry.update();
@@ -111,7 +116,7 @@ public class Teleop2 extends OpMode {
         // X / cross: toggle feeder between down and up
         if (gamepad1.a && !lastCross) {
             feederUp = !feederUp;
-            feederServo.setPosition(feederUp ? 1.0 : 0.0);
+            feeder.setPosition(feederUp ? 1.0 : 0.0);
         }
         lastCross = gamepad1.a;
 
@@ -119,7 +124,7 @@ public class Teleop2 extends OpMode {
         // triangle: toggle stopper between closed and open
         if (gamepad1.y && !lastTriangle) {
             stopperOpen = !stopperOpen;
-            stopperServo.setPosition(stopperOpen ? 1.0 : 0.0);
+            stopper.setPosition(stopperOpen ? 1.0 : 0.0);
         }
         lastTriangle = gamepad1.y;
 
@@ -141,8 +146,10 @@ public class Teleop2 extends OpMode {
         telemetry.addData("vel motor1","%.0f ticks/s", shooterMotor1.getVelocity());
 
         telemetry.addLine("-- SERVOS --");
-        telemetry.addData("feeder",  "%s (pos %.2f)", feederUp    ? "UP"   : "down",   feederServo.getPosition());
-        telemetry.addData("stopper", "%s (pos %.2f)", stopperOpen ? "OPEN" : "closed", stopperServo.getPosition());
+        telemetry.addData("feeder",  "%s (est %.2f, %d ms to go)", feederUp    ? "UP"   : "down",
+                feeder.estimatedPosition(), feeder.remainingMs());
+        telemetry.addData("stopper", "%s (est %.2f, %d ms to go)", stopperOpen ? "OPEN" : "closed",
+                stopper.estimatedPosition(), stopper.remainingMs());
 
         telemetry.update();
     }
@@ -0,0 +1,185 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DistanceSensor;
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/*
+WarmUp — runs the subsystems' per-loop code during init, so ART has compiled it before start
+instead of interpreting it through the first loops of the match.
+
+Drivetrain.warmUp() / Shooter.warmUp() only cover their maths. This runs the loop code itself:
+drive() through traction control and the arbiter, the shooter state machine, the intake's jam
+check, BallCounter, FlywheelPreSpin and PowerArbiter.loop(). They are scratch instances on
+made up hardware, so nothing moves and the real subsystems' state and counters stay clean:
+ - motors, servos, the battery and the ball sensor are proxies that ignore every command and
+   read back simulated values (a motor's velocity follows its power)
+ - the pinpoint is the real one, drive() only reads its cached pose, update() is never called
+ - the servo models arrive within a millisecond, so volleys go round without waiting
+
+Branches that only open after real time has passed (a jam confirmed after STALL_CONFIRM_MS,
+the spin-up fallback) aren't reached, the code around them is.
+
+For a before / after comparison set WARM_UP_ITERATIONS to 0 in Teleop, and compare the
+"first loop" / "worst of opening" telemetry line (also in the match history) with 3000.
+ */
+public class WarmUp {
+
+    // simulated speeds at full power, ticks per second
+    private static final double WHEEL_TPS = 2500;
+    private static final double INTAKE_TPS = 2000;
+
+    private WarmUp() {
+    }
+
+    // returns how long it took, ms
+    public static double run(HardwareMapConfig real, int iterations) {
+        if (iterations <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+
+        SimulatedDevice flywheel0 = new SimulatedDevice(0);
+        SimulatedDevice flywheel1 = new SimulatedDevice(0);
+        SimulatedDevice roller = new SimulatedDevice(INTAKE_TPS);
+        SimulatedDevice ballSensor = new SimulatedDevice(0);
+
+        HardwareMapConfig dry = new HardwareMapConfig();
+        dry.wheel_0 = device(DcMotorEx.class, new SimulatedDevice(WHEEL_TPS));
+        dry.wheel_1 = device(DcMotorEx.class, new SimulatedDevice(WHEEL_TPS));
+        dry.wheel_2 = device(DcMotorEx.class, new SimulatedDevice(WHEEL_TPS));
+        dry.wheel_3 = device(DcMotorEx.class, new SimulatedDevice(WHEEL_TPS));
+        dry.shooter_motor_0 = device(DcMotorEx.class, flywheel0);
+        dry.shooter_motor_1 = device(DcMotorEx.class, flywheel1);
+        dry.feeder_servo = device(Servo.class, new SimulatedDevice(0));
+        dry.stopper_servo = device(Servo.class, new SimulatedDevice(0));
+        dry.intake_motor = device(DcMotorEx.class, roller);
+        // only warm the ball counting the robot really uses
+        dry.ball_sensor = real.ball_sensor == null ? null : device(DistanceSensor.class, ballSensor);
+        dry.battery = device(VoltageSensor.class, new SimulatedDevice(0));
+        dry.pinpoint = real.pinpoint;
+
+        Drivetrain drivetrain = new Drivetrain(dry);
+        Shooter shooter = new Shooter(dry);
+        Intake intake = new Intake(dry);
+        BallCounter ballCounter = new BallCounter(dry, intake, shooter);
+        FlywheelPreSpin preSpin = new FlywheelPreSpin(dry, shooter, ballCounter);
+        PowerArbiter power = new PowerArbiter(dry);
+        drivetrain.setPowerArbiter(power);
+        shooter.setPowerArbiter(power);
+        intake.setPowerArbiter(power);
+
+        // fastest servo timing, otherwise every volley would wait on real travel time
+        shooter.getFeeder().setTiming(0, 0);
+        shooter.getStopper().setTiming(0, 0);
+
+        Gamepad pad = new Gamepad();
+        for (int i = 0; i < iterations; i++) {
+            double t = i * 0.01;
+            double a = Math.sin(t), b = Math.cos(t);
+            double distance = 2000 + 1500 * a;
+
+            // buttons are pressed now and then, the subsystems act on the press
+            pad.a = i % 150 == 0;
+            pad.left_bumper = i % 400 == 0;
+            if (i % 300 == 0) {
+                intake.setIntaking(i % 600 == 0);
+            }
+            if (i % 250 == 0 && !shooter.shootingCurrently) {
+                shooter.startShootingSequence();
+            }
+
+            // simulated readings: the flywheels at speed with a dip every few loops (a ball fired),
+            // the roller slowing and the ball sensor seeing something now and then (a ball coming in)
+            double target = shooter.getTargetVelocity();
+            flywheel0.velocity = i % 7 == 0 ? target * 0.8 : target;
+            flywheel1.velocity = flywheel0.velocity;
+            roller.load = i % 50 < 5 ? 0.5 : 1;
+            ballSensor.distance = i % 50 < 5 ? 30 : 200;
+
+            drivetrain.drive(a, b * 0.5, a * b);
+            preSpin.loop(distance);
+            shooter.setTargetDistance(distance);
+            intake.loop(pad);
+            shooter.loop(null);
+            ballCounter.loop(pad);
+            power.loop();
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    // HELPER METHODS
+
+    private static <T> T device(Class<T> type, SimulatedDevice simulation) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, simulation));
+    }
+
+    // stands in for any motor / servo / sensor, commands are kept but never reach hardware
+    private static class SimulatedDevice implements InvocationHandler {
+
+        private final double freeTicksPerSecond; // 0 = velocity is set from outside
+        double velocity = 0;
+        double load = 1;        // 0..1, fraction of the free speed reached at this power
+        double distance = 200;  // mm, for a distance sensor
+        private double power = 0;
+        private double position = 0;
+
+        SimulatedDevice(double freeTicksPerSecond) {
+            this.freeTicksPerSecond = freeTicksPerSecond;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "setPower":
+                    power = (Double) args[0];
+                    if (freeTicksPerSecond > 0) {
+                        velocity = power * load * freeTicksPerSecond;
+                    }
+                    return null;
+                case "getPower":
+                    return power;
+                case "getVelocity":
+                    return velocity;
+                case "getCurrent":
+                    return 0.25 + 9 * Math.abs(power) * (1 - load);
+                case "setPosition":
+                    position = (Double) args[0];
+                    return null;
+                case "getPosition":
+                    return position;
+                case "getVoltage":
+                    return 12.5;
+                case "getDistance":
+                    return distance;
+                case "toString":
+                    return "warm-up device";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return zero(method.getReturnType());
+            }
+        }
+
+        // everything else does nothing and returns 0 / false / null
+        private static Object zero(Class<?> type) {
+            if (type == boolean.class) return false;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == double.class) return 0.0;
+            if (type == float.class) return 0f;
+            if (type == short.class) return (short) 0;
+            if (type == byte.class) return (byte) 0;
+            if (type == char.class) return (char) 0;
+            return null;
+        }
+    }
+}
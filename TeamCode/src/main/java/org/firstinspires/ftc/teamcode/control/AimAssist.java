@@ -0,0 +1,135 @@
+package org.firstinspires.ftc.teamcode.control;
+
+import org.firstinspires.ftc.teamcode.util.PoseHistory;
+
+/**
+ * AimAssist — turns the robot to face the goal while the driver keeps the sticks for translation.
+ *
+ * The best bearing is the goal tag's, but it was measured when the frame was captured, tens
+ * of milliseconds ago, and the robot has kept turning since. So the tag bearing is rotated by
+ * the heading change since the frame's capture time, looked up in a short history of pinpoint
+ * headings. Without a recent tag the bearing comes from the pinpoint pose and the goal position
+ * instead, but only once the pose is in the field frame. Otherwise there is nothing to aim
+ * at (source NONE) and the driver keeps the rotation.
+ *
+ * Settled means the heading error and turn rate have both been small for SETTLE_MS, which is
+ * what the shooter waits for. No allocation after construction.
+ */
+public class AimAssist {
+
+    public enum Source {
+        NONE, TAG, POSE
+    }
+
+    // TUNE THESE
+    private static final double TOLERANCE_RAD = 0.03;         // about 1.7 degrees either side
+    private static final double SETTLE_RATE_RAD_S = 0.2;      // still turning faster than this = not settled
+    private static final long SETTLE_MS = 120;
+    private static final long TAG_MAX_AGE_NS = 300_000_000L;  // older tag bearings fall back to the pose
+
+    private final PIDFController controller = new PIDFController(1.2, 0.15, 0.06, 0)
+            .setDerivativeFilter(0.3).setIntegralLimit(0.1).setOutputLimits(-0.6, 0.6);
+
+    // 64 loops is over a second at 50 Hz, far longer than any frame we'd still use
+    private final PoseHistory history = new PoseHistory(64);
+
+    // latest goal tag bearing, radians, positive = goal is to the left (counter-clockwise)
+    private double tagBearing = 0;
+    private long tagFrameNanos = 0;
+    private boolean tagSeen = false;
+
+    private Source source = Source.NONE;
+    private double error = 0;
+    private long settledSince = -1;
+    private boolean settled = false;
+
+    // MAIN METHODS
+
+    // call every loop, aiming or not, so the history already covers the age of the next frame
+    public void record(long nanos, double x, double y, double heading) {
+        history.add(nanos, x, y, heading);
+    }
+
+    // the goal tag's bearing from the camera and when its frame was captured (System.nanoTime() base)
+    public void setTagBearing(double bearingRad, long frameNanos) {
+        tagBearing = bearingRad;
+        tagFrameNanos = frameNanos;
+        tagSeen = true;
+    }
+
+    /**
+     * Rotate command towards the goal from the latest recorded pose.
+     *
+     * @param headingRate  pinpoint turn rate, rad/s, for settle detection
+     * @param fieldFrame   the recorded poses are in the field frame, so the goal position means something
+     * @return rotate for Drivetrain.drive(), positive turns clockwise like right_stick_x, 0 with source NONE
+     */
+    public double update(long nanos, double headingRate, double goalX, double goalY, boolean fieldFrame) {
+        if (history.isEmpty()) {
+            source = Source.NONE;
+            settled = false;
+            return 0;
+        }
+
+        if (tagSeen && nanos - tagFrameNanos < TAG_MAX_AGE_NS) {
+            // where the goal is now = where it was in the frame minus how far we've turned since
+            error = wrap(tagBearing - history.headingChangeSince(tagFrameNanos));
+            source = Source.TAG;
+        } else if (fieldFrame) {
+            error = wrap(bearingFromPose(history.latestX(), history.latestY(), history.latestHeading(), goalX, goalY));
+            source = Source.POSE;
+        } else {
+            controller.reset();
+            source = Source.NONE;
+            settledSince = -1;
+            settled = false;
+            return 0;
+        }
+
+        if (Math.abs(error) < TOLERANCE_RAD && Math.abs(headingRate) < SETTLE_RATE_RAD_S) {
+            if (settledSince < 0) {
+                settledSince = nanos;
+            }
+            settled = nanos - settledSince >= SETTLE_MS * 1_000_000L;
+        } else {
+            settledSince = -1;
+            settled = false;
+        }
+
+        // error is counter-clockwise positive (ftcPose.bearing, pinpoint heading), rotate is clockwise positive
+        return -controller.calculateFromError(error);
+    }
+
+    // aim released, the next aim starts without old integral / settle state
+    public void reset() {
+        controller.reset();
+        settledSince = -1;
+        settled = false;
+        source = Source.NONE;
+        error = 0;
+    }
+
+    // HELPER METHODS
+
+    // heading 0 faces +y and forward at heading h is (-sin h, cos h)
+    public static double bearingFromPose(double x, double y, double heading, double goalX, double goalY) {
+        return Math.atan2(-(goalX - x), goalY - y) - heading;
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    // heading error to the goal, radians, from the last update()
+    public double getError() {
+        return error;
+    }
+}
@@ -0,0 +1,113 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/**
+ * CollisionDetector — notices when an autonomous move is blocked, so auto can give up on it
+ * instead of pushing against another robot until the period ends.
+ *
+ * Two things give a blocked robot away:
+ *  - stall: the wheels are being driven but the robot isn't moving the way they push it.
+ *    The pinpoint dead wheels measure what the chassis really does, wheel encoders would
+ *    just show the wheels spinning. Flagged once it has lasted STALL_MS.
+ *  - impact: a chassis acceleration the drive can't produce itself (well over the traction
+ *    limit), or a turn much faster than the rotate power could cause, both from being hit
+ *    or running into something. Flagged straight away.
+ *
+ * Inputs are the powers actually sent to the wheels (after traction control), so the ramp
+ * at the start of a move doesn't count as a stall. No allocation after construction.
+ */
+public class CollisionDetector {
+
+    public enum Event {
+        NONE, STALL, IMPACT
+    }
+
+    // TUNE THESE
+    private static final double STALL_MIN_POWER = 0.2;        // below this the robot may just be settling on the target
+    private static final double STALL_SPEED_MM_S = 80;        // slower than this along the pushed direction = not moving
+    private static final long STALL_MS = 200;
+    private static final double IMPACT_MM_S2 = 6000;          // traction limits the robot itself to ~3500
+    private static final double MAX_TURN_RAD_S = 5.2;         // turn rate at rotate = 1 (wheel speed / turn radius)
+    private static final double TURN_MARGIN_RAD_S = 1.5;      // faster than rotate can explain by this much = knocked
+    private static final double ACCEL_FILTER = 0.5;           // 0..1, weight of the newest acceleration sample
+
+    // a long gap (paused opmode) shouldn't be read as a huge acceleration
+    private static final double MAX_DT = 0.1;
+
+    private long lastNanos = 0;
+    private double lastForward = 0, lastStrafe = 0;
+    private double accel = 0;         // filtered chassis acceleration, mm/s^2
+    private long stallSince = -1;
+
+    private Event event = Event.NONE;
+    private double peakAccel = 0;
+
+    /**
+     * @param forwardPower   applied power, robot frame, same axes as Drivetrain.drive()
+     * @param strafePower    positive = right
+     * @param rotatePower    applied rotate power
+     * @param forwardMmS     chassis velocity in the robot frame (pinpoint)
+     * @param strafeMmS      positive = right
+     * @param turnRadS       heading rate from the pinpoint's imu
+     * @return NONE, or what stopped the robot (it stays reported until reset())
+     */
+    public Event update(long nanos, double forwardPower, double strafePower, double rotatePower,
+                        double forwardMmS, double strafeMmS, double turnRadS) {
+        double dt = lastNanos == 0 ? 0 : Math.min((nanos - lastNanos) / 1e9, MAX_DT);
+        lastNanos = nanos;
+        if (event != Event.NONE) {
+            return event;
+        }
+
+        // impact: filtered chassis acceleration, same idea as TractionControl's
+        if (dt > 0) {
+            double ax = (strafeMmS - lastStrafe) / dt;
+            double ay = (forwardMmS - lastForward) / dt;
+            accel += ACCEL_FILTER * (Math.hypot(ax, ay) - accel);
+            peakAccel = Math.max(peakAccel, accel);
+        }
+        lastForward = forwardMmS;
+        lastStrafe = strafeMmS;
+
+        double turnExplained = Math.abs(rotatePower) * MAX_TURN_RAD_S + TURN_MARGIN_RAD_S;
+        if (accel > IMPACT_MM_S2 || Math.abs(turnRadS) > turnExplained) {
+            event = Event.IMPACT;
+            return event;
+        }
+
+        // stall: speed along the direction the wheels push, so being shoved backwards counts too
+        double power = Math.hypot(forwardPower, strafePower);
+        double along = power == 0 ? 0 : (forwardMmS * forwardPower + strafeMmS * strafePower) / power;
+        if (power >= STALL_MIN_POWER && along < STALL_SPEED_MM_S) {
+            if (stallSince < 0) {
+                stallSince = nanos;
+            }
+            if (nanos - stallSince >= STALL_MS * 1_000_000L) {
+                event = Event.STALL;
+            }
+        } else {
+            stallSince = -1;
+        }
+        return event;
+    }
+
+    // call at the start of every move
+    public void reset() {
+        lastNanos = 0;
+        lastForward = 0;
+        lastStrafe = 0;
+        accel = 0;
+        stallSince = -1;
+        event = Event.NONE;
+    }
+
+    // HELPER METHODS
+
+    public Event getEvent() {
+        return event;
+    }
+
+    // highest filtered acceleration seen since construction, for tuning IMPACT_MM_S2
+    public double getPeakAccel() {
+        return peakAccel;
+    }
+}
@@ -0,0 +1,29 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/**
+ * Feedforward — motor power needed for a velocity (and acceleration) before any feedback.
+ *
+ * power = kS * sign(v) + kV * v + kA * a
+ * kS overcomes friction, kV is roughly 1 / max velocity, kA covers inertia while speeding up.
+ */
+public class Feedforward {
+
+    private double kS, kV, kA;
+
+    public Feedforward(double kS, double kV, double kA) {
+        this.kS = kS;
+        this.kV = kV;
+        this.kA = kA;
+    }
+
+    public double calculate(double velocity) {
+        return calculate(velocity, 0);
+    }
+
+    public double calculate(double velocity, double acceleration) {
+        if (velocity == 0 && acceleration == 0) {
+            return 0;
+        }
+        return kS * Math.signum(velocity) + kV * velocity + kA * acceleration;
+    }
+}
@@ -0,0 +1,208 @@
+package org.firstinspires.ftc.teamcode.control;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * FieldGrid — the field as an occupancy grid with a distance transform, plus the named
+ * shooting poses, built on the laptop by tools/field_grid_builder.py.
+ *
+ * The builder does the slow part (rasterising field elements, the exact distance to the
+ * nearest obstacle for every cell) once, so the robot only loads a small binary file from
+ * the settings folder and does array lookups. Field frame, mm, origin in the middle, the
+ * same frame the pinpoint is in once vision has set it.
+ *
+ * File, little endian:
+ *   "FGRD", int32 version, int32 cols, int32 rows, float32 cell mm, float32 origin x, float32 origin y
+ *   uint8 occupied * cols * rows, uint16 clearance mm * cols * rows (row major, row 0 at origin y)
+ *   int32 pose count, then per pose: uint8 name length, name (utf-8), float32 x, y, heading
+ */
+public class FieldGrid {
+
+    public static final String FILE_NAME = "field_grid.bin";
+    private static final int VERSION = 1;
+
+    private final int cols, rows;
+    private final double cellMm, originX, originY;
+    private final boolean[] occupied;
+    private final int[] clearance;   // mm from the cell centre to the nearest obstacle or wall
+
+    private final String[] poseNames;
+    private final double[] poseX, poseY, poseHeading;
+
+    private FieldGrid(int cols, int rows, double cellMm, double originX, double originY,
+                      boolean[] occupied, int[] clearance,
+                      String[] poseNames, double[] poseX, double[] poseY, double[] poseHeading) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cellMm = cellMm;
+        this.originX = originX;
+        this.originY = originY;
+        this.occupied = occupied;
+        this.clearance = clearance;
+        this.poseNames = poseNames;
+        this.poseX = poseX;
+        this.poseY = poseY;
+        this.poseHeading = poseHeading;
+    }
+
+    // null if the grid hasn't been pushed to the robot (or is broken), callers drive straight then
+    public static FieldGrid load() {
+        File file = AppUtil.getInstance().getSettingsFile(FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            return parse(bytes);
+        } catch (IOException | RuntimeException e) {
+            RobotLog.ee("FieldGrid", e, "bad %s, no path planning", FILE_NAME);
+            return null;
+        }
+    }
+
+    public static FieldGrid parse(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.get() != 'F' || in.get() != 'G' || in.get() != 'R' || in.get() != 'D') {
+            throw new IllegalArgumentException("not a field grid");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("field grid version " + version + ", expected " + VERSION);
+        }
+        int cols = in.getInt();
+        int rows = in.getInt();
+        double cellMm = in.getFloat();
+        double originX = in.getFloat();
+        double originY = in.getFloat();
+        if (cols <= 0 || rows <= 0 || cellMm <= 0) {
+            throw new IllegalArgumentException("bad field grid size");
+        }
+
+        int cells = cols * rows;
+        boolean[] occupied = new boolean[cells];
+        for (int i = 0; i < cells; i++) {
+            occupied[i] = in.get() != 0;
+        }
+        int[] clearance = new int[cells];
+        for (int i = 0; i < cells; i++) {
+            clearance[i] = in.getShort() & 0xffff;
+        }
+
+        int poseCount = in.getInt();
+        String[] names = new String[poseCount];
+        double[] x = new double[poseCount];
+        double[] y = new double[poseCount];
+        double[] heading = new double[poseCount];
+        for (int i = 0; i < poseCount; i++) {
+            byte[] name = new byte[in.get() & 0xff];
+            in.get(name);
+            names[i] = new String(name, Charset.forName("UTF-8"));
+            x[i] = in.getFloat();
+            y[i] = in.getFloat();
+            heading[i] = in.getFloat();
+        }
+        return new FieldGrid(cols, rows, cellMm, originX, originY, occupied, clearance, names, x, y, heading);
+    }
+
+    // HELPER METHODS
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int cellCount() {
+        return cols * rows;
+    }
+
+    public double getCellMm() {
+        return cellMm;
+    }
+
+    // cell index for a field position, -1 when off the grid
+    public int cellAt(double x, double y) {
+        int col = (int) Math.floor((x - originX) / cellMm);
+        int row = (int) Math.floor((y - originY) / cellMm);
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            return -1;
+        }
+        return row * cols + col;
+    }
+
+    public int colOf(int cell) {
+        return cell % cols;
+    }
+
+    public int rowOf(int cell) {
+        return cell / cols;
+    }
+
+    public double centerX(int cell) {
+        return originX + (colOf(cell) + 0.5) * cellMm;
+    }
+
+    public double centerY(int cell) {
+        return originY + (rowOf(cell) + 0.5) * cellMm;
+    }
+
+    public boolean isOccupied(int cell) {
+        return occupied[cell];
+    }
+
+    public int clearanceAt(int cell) {
+        return clearance[cell];
+    }
+
+    // true if every cell along the segment has at least this much clearance (off the grid counts as blocked)
+    public boolean segmentClear(double x0, double y0, double x1, double y1, double minClearance) {
+        double length = Math.hypot(x1 - x0, y1 - y0);
+        int steps = Math.max(1, (int) Math.ceil(length / (cellMm * 0.5)));
+        for (int i = 0; i <= steps; i++) {
+            double t = (double) i / steps;
+            int cell = cellAt(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t);
+            if (cell < 0 || clearance[cell] < minClearance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int poseCount() {
+        return poseNames.length;
+    }
+
+    public String poseName(int i) {
+        return poseNames[i];
+    }
+
+    public double poseX(int i) {
+        return poseX[i];
+    }
+
+    public double poseY(int i) {
+        return poseY[i];
+    }
+
+    public double poseHeading(int i) {
+        return poseHeading[i];
+    }
+}
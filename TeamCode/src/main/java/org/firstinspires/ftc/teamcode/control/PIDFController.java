@@ -0,0 +1,134 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/**
+ * PIDFController — PID with setpoint feedforward that measures its own loop period.
+ *
+ * dt comes from System.nanoTime() on every call, so the same gains behave the same at
+ * 30 Hz and 120 Hz. The derivative is low-pass filtered (encoder / odometry noise gets
+ * amplified by d/dt), the integral is clamped and stops growing while the output is
+ * saturated (anti-windup), and the output can be slew limited. No allocation after
+ * construction, so it is safe in loop().
+ */
+public class PIDFController {
+
+    private double kP, kI, kD, kF;
+
+    // 1 = no filtering, smaller = smoother derivative
+    private double derivativeAlpha = 1.0;
+    // max |kI * integral|
+    private double integralLimit = Double.POSITIVE_INFINITY;
+    private double minOutput = Double.NEGATIVE_INFINITY;
+    private double maxOutput = Double.POSITIVE_INFINITY;
+    // max output change per second, 0 = off
+    private double slewRate = 0;
+
+    // a long gap (paused opmode, init -> start) shouldn't look like a huge dt
+    private static final double MAX_DT = 0.1;
+    // the first call after reset() has no dt of its own, the slew limit uses one loop at 50 Hz
+    private static final double NOMINAL_DT = 0.02;
+
+    private double integral = 0;
+    private double lastError = 0;
+    private double filteredDerivative = 0;
+    private double lastOutput = 0;
+    private long lastNanos = 0;
+    private boolean first = true;
+
+    public PIDFController(double kP, double kI, double kD, double kF) {
+        setGains(kP, kI, kD, kF);
+    }
+
+    public void setGains(double kP, double kI, double kD, double kF) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+        this.kF = kF;
+    }
+
+    public PIDFController setDerivativeFilter(double alpha) {
+        derivativeAlpha = Math.max(0, Math.min(1, alpha));
+        return this;
+    }
+
+    public PIDFController setIntegralLimit(double limit) {
+        integralLimit = Math.abs(limit);
+        return this;
+    }
+
+    public PIDFController setOutputLimits(double min, double max) {
+        minOutput = min;
+        maxOutput = max;
+        return this;
+    }
+
+    public PIDFController setSlewRate(double perSecond) {
+        slewRate = Math.abs(perSecond);
+        return this;
+    }
+
+    // output for this loop
+    public double calculate(double setpoint, double measurement) {
+        return update(setpoint - measurement, setpoint);
+    }
+
+    // for errors the caller has already worked out, e.g. heading wrapped to [-pi, pi]
+    public double calculateFromError(double error) {
+        return update(error, 0);
+    }
+
+    // call when the target jumps or the controller hasn't run for a while
+    public void reset() {
+        integral = 0;
+        lastError = 0;
+        filteredDerivative = 0;
+        lastOutput = 0;
+        first = true;
+    }
+
+    public double getLastError() {
+        return lastError;
+    }
+
+    public double getLastOutput() {
+        return lastOutput;
+    }
+
+    private double update(double error, double setpoint) {
+        long now = System.nanoTime();
+        double dt = first ? 0 : Math.min((now - lastNanos) / 1e9, MAX_DT);
+        lastNanos = now;
+
+        double derivative = 0;
+        if (dt > 0) {
+            double raw = (error - lastError) / dt;
+            filteredDerivative += derivativeAlpha * (raw - filteredDerivative);
+            derivative = filteredDerivative;
+        }
+
+        // integrate, unless that would push an already saturated output further
+        if (dt > 0 && kI != 0) {
+            double candidate = integral + error * dt;
+            boolean saturatedHigh = lastOutput >= maxOutput && error > 0;
+            boolean saturatedLow = lastOutput <= minOutput && error < 0;
+            if (!saturatedHigh && !saturatedLow) {
+                integral = candidate;
+            }
+            double maxIntegral = integralLimit / Math.abs(kI);
+            integral = Math.max(-maxIntegral, Math.min(maxIntegral, integral));
+        }
+
+        double output = kF * setpoint + kP * error + kI * integral + kD * derivative;
+        output = Math.max(minOutput, Math.min(maxOutput, output));
+
+        // slew from lastOutput on the first call as well, that's the step from rest it's there for
+        if (slewRate > 0) {
+            double maxStep = slewRate * (dt > 0 ? dt : NOMINAL_DT);
+            output = Math.max(lastOutput - maxStep, Math.min(lastOutput + maxStep, output));
+        }
+
+        lastError = error;
+        lastOutput = output;
+        first = false;
+        return output;
+    }
+}
@@ -0,0 +1,361 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/**
+ * PathPlanner — A* over a FieldGrid from the robot to whichever named pose is closest by path.
+ *
+ * All the poses are goals of one search (the heuristic is the distance to the nearest of
+ * them), so picking the best shooting spot costs no more than planning to one. Cells the
+ * robot's footprint can't fit in (clearance under ROBOT_RADIUS_MM) are walls, and cells
+ * close to obstacles cost extra so the path keeps some room where it can.
+ *
+ * The raw path is cell centres in 8 directions, so it is smoothed by string pulling: from
+ * each kept point, skip ahead to the furthest point still reachable in a straight line
+ * with the same clearance. What's left is a handful of waypoints for the drivetrain. A path
+ * that still needs more than MAX_WAYPOINTS fails (isTooLong()) rather than being cut short,
+ * a cut path would end in a straight line through whatever the rest went round.
+ *
+ * Everything is allocated in the constructor. A search id stamps which cells belong to the
+ * current search, so nothing has to be cleared between plans.
+ */
+public class PathPlanner {
+
+    // TUNE THESE
+    private static final double ROBOT_RADIUS_MM = 260;       // half the diagonal would be 320, the grid rounds in our favour
+    private static final double PREFERRED_CLEARANCE_MM = 450; // closer than this costs extra
+    private static final double CLEARANCE_WEIGHT = 2.0;       // cost factor right at ROBOT_RADIUS_MM
+    private static final int MAX_WAYPOINTS = 64;              // a winding path across the field needs ~20
+
+    private static final int[] DCOL = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] DROW = {0, 0, 1, -1, 1, -1, 1, -1};
+    private static final double SQRT2 = Math.sqrt(2);
+
+    private final FieldGrid grid;
+
+    // search state, valid where stamp == search
+    private final double[] cost;
+    private final int[] parent;
+    private final int[] stamp;
+    private final boolean[] closed;
+    private final int[] goalOf;     // pose index + 1 for goal cells of this search, 0 otherwise
+    private int search = 0;
+
+    // binary min heap of cells keyed by cost + heuristic
+    private final int[] heap;
+    private final double[] heapKey;
+    private final int[] heapPos;    // where a cell sits in the heap, -1 if not there
+    private int heapSize = 0;
+
+    // result
+    private final int[] rawPath;
+    private final double[] waypointX = new double[MAX_WAYPOINTS];
+    private final double[] waypointY = new double[MAX_WAYPOINTS];
+    private int waypointCount = 0;
+    private int chosenPose = -1;
+    private boolean tooLong = false;
+    private double lastPlanMs = 0;
+    private int lastExpanded = 0;
+
+    public PathPlanner(FieldGrid grid) {
+        this.grid = grid;
+        int cells = grid.cellCount();
+        cost = new double[cells];
+        parent = new int[cells];
+        stamp = new int[cells];
+        closed = new boolean[cells];
+        goalOf = new int[cells];
+        heap = new int[cells];
+        heapKey = new double[cells];
+        heapPos = new int[cells];
+        rawPath = new int[cells];
+    }
+
+    /**
+     * Plans from (x, y) to the nearest reachable named pose.
+     *
+     * @return the pose index, or -1 if none can be reached or the path needs too many waypoints
+     *         (isTooLong(), no waypoints then either)
+     */
+    public int plan(double x, double y) {
+        long start = System.nanoTime();
+        search++;
+        heapSize = 0;
+        waypointCount = 0;
+        chosenPose = -1;
+        tooLong = false;
+        lastExpanded = 0;
+
+        int startCell = freeCellNear(grid.cellAt(x, y));
+        int goalCells = markGoals();
+        if (startCell >= 0 && goalCells > 0) {
+            int goal = aStar(startCell);
+            if (goal >= 0) {
+                chosenPose = goalOf[goal] - 1;
+                if (!smooth(x, y, goal)) {
+                    tooLong = true;
+                    chosenPose = -1;
+                    waypointCount = 0;
+                }
+            }
+        }
+
+        lastPlanMs = (System.nanoTime() - start) / 1e6;
+        return chosenPose;
+    }
+
+    // HELPER METHODS
+
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    // the last plan found a path but it needed more than MAX_WAYPOINTS
+    public boolean isTooLong() {
+        return tooLong;
+    }
+
+    public static int getMaxWaypoints() {
+        return MAX_WAYPOINTS;
+    }
+
+    public double getWaypointX(int i) {
+        return waypointX[i];
+    }
+
+    public double getWaypointY(int i) {
+        return waypointY[i];
+    }
+
+    public int getChosenPose() {
+        return chosenPose;
+    }
+
+    public double getLastPlanMs() {
+        return lastPlanMs;
+    }
+
+    public int getLastExpanded() {
+        return lastExpanded;
+    }
+
+    public FieldGrid getGrid() {
+        return grid;
+    }
+
+    private boolean passable(int cell) {
+        return grid.clearanceAt(cell) >= ROBOT_RADIUS_MM;
+    }
+
+    // pushed against a wall or an element the robot's own cell can read as blocked,
+    // so start from the nearest cell with room (within a few cells)
+    private int freeCellNear(int cell) {
+        if (cell < 0 || passable(cell)) {
+            return cell;
+        }
+        int col = grid.colOf(cell), row = grid.rowOf(cell);
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int reach = (int) Math.ceil(ROBOT_RADIUS_MM / grid.getCellMm()) + 2;
+        for (int dr = -reach; dr <= reach; dr++) {
+            for (int dc = -reach; dc <= reach; dc++) {
+                int c = col + dc, r = row + dr;
+                if (c < 0 || r < 0 || c >= grid.getCols() || r >= grid.getRows()) continue;
+                int candidate = r * grid.getCols() + c;
+                int distance = dc * dc + dr * dr;
+                if (distance < bestDistance && passable(candidate)) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int markGoals() {
+        int marked = 0;
+        for (int i = 0; i < grid.poseCount(); i++) {
+            int cell = grid.cellAt(grid.poseX(i), grid.poseY(i));
+            if (cell >= 0 && passable(cell)) {
+                touch(cell);
+                goalOf[cell] = i + 1;
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    // first time a cell is seen in this search
+    private void touch(int cell) {
+        if (stamp[cell] != search) {
+            stamp[cell] = search;
+            cost[cell] = Double.MAX_VALUE;
+            parent[cell] = -1;
+            closed[cell] = false;
+            goalOf[cell] = 0;
+            heapPos[cell] = -1;
+        }
+    }
+
+    private int aStar(int startCell) {
+        touch(startCell);
+        cost[startCell] = 0;
+        push(startCell, heuristic(startCell));
+
+        while (heapSize > 0) {
+            int cell = pop();
+            if (goalOf[cell] != 0) {
+                return cell;
+            }
+            closed[cell] = true;
+            lastExpanded++;
+
+            int col = grid.colOf(cell), row = grid.rowOf(cell);
+            for (int d = 0; d < 8; d++) {
+                int c = col + DCOL[d], r = row + DROW[d];
+                if (c < 0 || r < 0 || c >= grid.getCols() || r >= grid.getRows()) continue;
+                int next = r * grid.getCols() + c;
+                if (!passable(next)) continue;
+                // no cutting corners between two blocked cells
+                if (d >= 4 && (!passable(row * grid.getCols() + c) || !passable(r * grid.getCols() + col))) continue;
+
+                touch(next);
+                if (closed[next]) continue;
+                double step = (d < 4 ? 1 : SQRT2) * grid.getCellMm() * costFactor(next);
+                double candidate = cost[cell] + step;
+                if (candidate < cost[next]) {
+                    cost[next] = candidate;
+                    parent[next] = cell;
+                    double key = candidate + heuristic(next);
+                    if (heapPos[next] < 0) {
+                        push(next, key);
+                    } else {
+                        decrease(next, key);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    // extra cost near obstacles, 1 in open space so the heuristic stays admissible
+    private static double clearanceCost(double clearance) {
+        if (clearance >= PREFERRED_CLEARANCE_MM) return 1;
+        double closeness = (PREFERRED_CLEARANCE_MM - clearance) / (PREFERRED_CLEARANCE_MM - ROBOT_RADIUS_MM);
+        return 1 + CLEARANCE_WEIGHT * Math.min(1, closeness);
+    }
+
+    private double costFactor(int cell) {
+        return clearanceCost(grid.clearanceAt(cell));
+    }
+
+    // octile distance to the nearest goal
+    private double heuristic(int cell) {
+        double best = Double.MAX_VALUE;
+        int col = grid.colOf(cell), row = grid.rowOf(cell);
+        for (int i = 0; i < grid.poseCount(); i++) {
+            int goal = grid.cellAt(grid.poseX(i), grid.poseY(i));
+            if (goal < 0) continue;
+            int dc = Math.abs(grid.colOf(goal) - col);
+            int dr = Math.abs(grid.rowOf(goal) - row);
+            double octile = Math.max(dc, dr) + (SQRT2 - 1) * Math.min(dc, dr);
+            best = Math.min(best, octile);
+        }
+        return best * grid.getCellMm();
+    }
+
+    // string pulling over the cell path, first point is the robot, last is the exact pose,
+    // false if it didn't fit in MAX_WAYPOINTS
+    private boolean smooth(double x, double y, int goal) {
+        int length = 0;
+        for (int cell = goal; cell >= 0; cell = parent[cell]) {
+            rawPath[length++] = cell;
+        }
+        // rawPath runs goal -> start, walk it backwards
+        double minClearance = ROBOT_RADIUS_MM;
+        double anchorX = x, anchorY = y;
+        int i = length - 1;
+        while (i > 0) {
+            int furthest = i - 1;
+            for (int j = i - 1; j >= 0; j--) {
+                if (grid.segmentClear(anchorX, anchorY, grid.centerX(rawPath[j]), grid.centerY(rawPath[j]), minClearance)) {
+                    furthest = j;
+                } else if (j < i - 1) {
+                    break;
+                }
+            }
+            if (furthest == 0) {
+                break;
+            }
+            // room has to stay for the final pose
+            if (waypointCount == MAX_WAYPOINTS - 1) {
+                return false;
+            }
+            anchorX = grid.centerX(rawPath[furthest]);
+            anchorY = grid.centerY(rawPath[furthest]);
+            waypointX[waypointCount] = anchorX;
+            waypointY[waypointCount] = anchorY;
+            waypointCount++;
+            i = furthest;
+        }
+        waypointX[waypointCount] = grid.poseX(chosenPose);
+        waypointY[waypointCount] = grid.poseY(chosenPose);
+        waypointCount++;
+        return true;
+    }
+
+    private void push(int cell, double key) {
+        heap[heapSize] = cell;
+        heapKey[heapSize] = key;
+        heapPos[cell] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapPos[top] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapKey[0] = heapKey[heapSize];
+            heapPos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void decrease(int cell, double key) {
+        int i = heapPos[cell];
+        heapKey[i] = key;
+        siftUp(i);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int up = (i - 1) / 2;
+            if (heapKey[up] <= heapKey[i]) break;
+            swap(i, up);
+            i = up;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1, right = left + 1, smallest = i;
+            if (left < heapSize && heapKey[left] < heapKey[smallest]) smallest = left;
+            if (right < heapSize && heapKey[right] < heapKey[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int cellA = heap[a], cellB = heap[b];
+        double keyA = heapKey[a];
+        heap[a] = cellB;
+        heapKey[a] = heapKey[b];
+        heap[b] = cellA;
+        heapKey[b] = keyA;
+        heapPos[cellB] = a;
+        heapPos[cellA] = b;
+    }
+}
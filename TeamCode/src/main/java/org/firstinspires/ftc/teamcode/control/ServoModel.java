@@ -0,0 +1,175 @@
+package org.firstinspires.ftc.teamcode.control;
+
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.util.ReadWriteFile;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * ServoModel — predicts when a servo has finished a move, since servos report nothing back.
+ *
+ * travel ms = dead ms + |delta| * ms per unit * load
+ * dead ms covers the pwm frame and the servo starting to move, ms per unit is the time for
+ * a full 0 -> 1 sweep once moving, and load (1 = free) stretches it when the servo is
+ * pushing something, e.g. the feeder shoving a ball. Both numbers come from
+ * ServoTimingCalibration and are stored per servo in servo_timing.csv (settings folder).
+ *
+ * Commands that interrupt a move start from where the servo is estimated to be by then,
+ * so a quick reversal only waits for the distance actually travelled. Until the first
+ * move has finished the position is unknown and the worst case distance is assumed.
+ */
+public class ServoModel {
+
+    public static final String FILE_NAME = "servo_timing.csv";
+
+    // used until the servo has been calibrated, matches the old fixed 300 ms wait for a full move
+    private static final double DEFAULT_DEAD_MS = 20;
+    private static final double DEFAULT_MS_PER_UNIT = 280;
+
+    private final Servo servo;
+    private final String name;
+    private double deadMs;
+    private double msPerUnit;
+
+    private boolean known = false;  // false until a move has finished
+    private double from = 0;        // estimated position when the current move started
+    private double target = -1;     // last commanded position, -1 = none yet
+    private long moveStart = 0;
+    private long arrival = 0;
+
+    public ServoModel(Servo servo, String name, double deadMs, double msPerUnit) {
+        this.servo = servo;
+        this.name = name;
+        this.deadMs = deadMs;
+        this.msPerUnit = msPerUnit;
+    }
+
+    // the calibrated timing for this servo, or the defaults if it hasn't been calibrated
+    public static ServoModel load(Servo servo, String name) {
+        ServoModel model = new ServoModel(servo, name, DEFAULT_DEAD_MS, DEFAULT_MS_PER_UNIT);
+        File file = AppUtil.getInstance().getSettingsFile(FILE_NAME);
+        if (!file.exists()) {
+            return model;
+        }
+        try {
+            for (String line : ReadWriteFile.readFile(file).split("\n")) {
+                String[] parts = line.trim().split(",");
+                if (parts.length == 3 && parts[0].equals(name)) {
+                    model.setTiming(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                }
+            }
+        } catch (RuntimeException e) {
+            RobotLog.ee("ServoModel", e, "bad %s, using default timing for %s", FILE_NAME, name);
+        }
+        return model;
+    }
+
+    // writes this servo's timing, keeping the other servos' lines
+    public void save() {
+        File file = AppUtil.getInstance().getSettingsFile(FILE_NAME);
+        StringBuilder sb = new StringBuilder();
+        if (file.exists()) {
+            for (String line : ReadWriteFile.readFile(file).split("\n")) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith(name + ",")) {
+                    sb.append(trimmed).append('\n');
+                }
+            }
+        }
+        sb.append(String.format(Locale.US, "%s,%.1f,%.1f%n", name, deadMs, msPerUnit));
+        ReadWriteFile.writeFile(file, sb.toString());
+    }
+
+    // MAIN METHODS
+
+    public void setPosition(double position) {
+        setPosition(position, 1.0);
+    }
+
+    // load > 1 when the servo is pushing against something, repeating the same command is free
+    public void setPosition(double position, double load) {
+        if (position == target) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        double distance;
+        if (known || isArrived(now)) {
+            from = estimatedPosition(now);
+            known = true;
+            distance = Math.abs(position - from);
+        } else {
+            // never seen it settle, it could be anywhere
+            distance = Math.max(position, 1 - position);
+        }
+
+        target = position;
+        moveStart = now;
+        arrival = now + Math.round(deadMs + distance * msPerUnit * load);
+        servo.setPosition(position);
+    }
+
+    public boolean isArrived() {
+        return isArrived(System.currentTimeMillis());
+    }
+
+    // ms until the current move is done, 0 once it has arrived
+    public long remainingMs() {
+        return Math.max(0, arrival - System.currentTimeMillis());
+    }
+
+    // where the servo should be right now, assuming it moves at a constant speed
+    public double estimatedPosition() {
+        return estimatedPosition(System.currentTimeMillis());
+    }
+
+    // HELPER METHODS
+
+    public void setTiming(double deadMs, double msPerUnit) {
+        this.deadMs = Math.max(0, deadMs);
+        this.msPerUnit = Math.max(1, msPerUnit);
+    }
+
+    public double getDeadMs() {
+        return deadMs;
+    }
+
+    public double getMsPerUnit() {
+        return msPerUnit;
+    }
+
+    public double getTarget() {
+        return target;
+    }
+
+    public Servo getServo() {
+        return servo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private boolean isArrived(long now) {
+        return target >= 0 && now >= arrival;
+    }
+
+    private double estimatedPosition(long now) {
+        if (target < 0) {
+            return 0;
+        }
+        if (now >= arrival) {
+            return target;
+        }
+        double moving = now - moveStart - deadMs;
+        if (moving <= 0 || !known) {
+            return from;
+        }
+        double travelled = Math.min(1, moving / (arrival - moveStart - deadMs));
+        return from + (target - from) * travelled;
+    }
+}
@@ -0,0 +1,159 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/**
+ * TractionControl — keeps the mecanum wheels inside the grip the carpet can give.
+ *
+ * Two layers on top of the wheel powers drive() works out:
+ *  - acceleration limit: each wheel's power may only rise as fast as the traction limit
+ *    allows (power rate = max accel / top wheel speed). Power towards zero isn't limited,
+ *    a stop or a reversal shouldn't wait on the ramp, only the new direction ramps up
+ *  - slip detection: the chassis velocity from the pinpoint dead wheels (which never slip)
+ *    is turned into the surface speed each wheel should have. A wheel spinning clearly
+ *    faster than that is slipping, so its power is backed off until it grips again.
+ *
+ * The chassis acceleration at the moment a slip starts is a direct measurement of the
+ * traction limit. It is averaged and shown on telemetry, which is how MAX_ACCEL_MM_S2
+ * gets tuned. No allocation after construction.
+ */
+public class TractionControl {
+
+    // wheel order matches Drivetrain: NE, SE, SW, NW
+    private static final int WHEELS = 4;
+
+    // TUNE THESE
+    private static final double TICKS_PER_MM = 537.7 / (Math.PI * 104); // 312 rpm yellow jacket, 104 mm mecanum
+    private static final double MAX_WHEEL_MM_S = 1700;     // wheel surface speed at full power
+    private static final double TURN_MM_PER_RAD = 330;     // (track width + wheel base) / 2
+    private static final double MAX_ACCEL_MM_S2 = 2500;    // traction limit speeding up
+    private static final double SLIP_MM_S = 150;           // spinning at least this much faster than the ground
+    private static final double SLIP_RATIO = 0.25;         // ... and by at least this fraction
+    private static final double SLIP_BACKOFF = 0.85;       // power factor per slipping cycle
+    private static final double MIN_GRIP = 0.4;
+    private static final double GRIP_RECOVER_PER_S = 2.0;
+
+    // a long gap (paused opmode, init -> start) shouldn't allow a huge power jump
+    private static final double MAX_DT = 0.1;
+
+    private final double[] lastPower = new double[WHEELS];
+    private final double[] grip = {1, 1, 1, 1};
+    private final boolean[] slipping = new boolean[WHEELS];
+    private final double[] expected = new double[WHEELS];
+
+    private long lastNanos = 0;
+    private double lastForward = 0, lastStrafe = 0;
+    private double accel = 0;           // filtered chassis acceleration, mm/s^2
+
+    private boolean enabled = true;
+    private long slipEvents = 0;
+    private double tractionLimitSum = 0;
+
+    /**
+     * Limits the powers in place.
+     *
+     * @param power          wheel powers from drive(), NE, SE, SW, NW
+     * @param wheelTicksPerS wheel velocities from this cycle's bulk read
+     * @param forwardMmS     chassis velocity in the robot frame (pinpoint)
+     * @param strafeMmS      positive = right, same as drive()
+     * @param turnRadS       heading rate, same sign as drive()'s rotate
+     */
+    public void apply(double[] power, double[] wheelTicksPerS, double forwardMmS, double strafeMmS, double turnRadS) {
+        long now = System.nanoTime();
+        double dt = lastNanos == 0 ? 0 : Math.min((now - lastNanos) / 1e9, MAX_DT);
+        lastNanos = now;
+
+        if (!enabled) {
+            System.arraycopy(power, 0, lastPower, 0, WHEELS);
+            return;
+        }
+
+        updateAcceleration(forwardMmS, strafeMmS, dt);
+
+        // surface speed each wheel should have, same mixing as drive()
+        double turn = turnRadS * TURN_MM_PER_RAD;
+        expected[0] = forwardMmS - strafeMmS - turn;
+        expected[1] = forwardMmS + strafeMmS - turn;
+        expected[2] = forwardMmS - strafeMmS + turn;
+        expected[3] = forwardMmS + strafeMmS + turn;
+
+        double maxRise = MAX_ACCEL_MM_S2 / MAX_WHEEL_MM_S * dt;
+
+        for (int i = 0; i < WHEELS; i++) {
+            updateGrip(i, wheelTicksPerS[i] / TICKS_PER_MM, dt);
+
+            // acceleration limit, only away from zero, a reversal drops to zero first
+            double target = power[i] * grip[i];
+            double last = target * lastPower[i] < 0 ? 0 : lastPower[i];
+            if (dt > 0 && Math.abs(target) > Math.abs(last)) {
+                target = Math.max(last - maxRise, Math.min(last + maxRise, target));
+            }
+
+            power[i] = target;
+            lastPower[i] = target;
+        }
+    }
+
+    // start from standstill again, e.g. after the drivetrain was stopped
+    public void reset() {
+        for (int i = 0; i < WHEELS; i++) {
+            lastPower[i] = 0;
+            grip[i] = 1;
+            slipping[i] = false;
+        }
+        lastNanos = 0;
+        accel = 0;
+    }
+
+    // HELPER METHODS
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSlipping(int wheel) {
+        return slipping[wheel];
+    }
+
+    public double getGrip(int wheel) {
+        return grip[wheel];
+    }
+
+    public long getSlipEvents() {
+        return slipEvents;
+    }
+
+    // average chassis acceleration when a wheel started slipping, 0 if none yet
+    public double getMeasuredTractionLimit() {
+        return slipEvents == 0 ? 0 : tractionLimitSum / slipEvents;
+    }
+
+    private void updateGrip(int i, double measuredMmS, double dt) {
+        double want = expected[i];
+        // only spinning faster than the ground counts, braking skids are left alone
+        double excess = Math.abs(measuredMmS) - Math.abs(want);
+        boolean slip = excess > SLIP_MM_S && excess > SLIP_RATIO * Math.abs(want);
+
+        if (slip) {
+            if (!slipping[i]) {
+                slipEvents++;
+                tractionLimitSum += Math.abs(accel);
+            }
+            grip[i] = Math.max(MIN_GRIP, grip[i] * SLIP_BACKOFF);
+        } else {
+            grip[i] = Math.min(1, grip[i] + GRIP_RECOVER_PER_S * dt);
+        }
+        slipping[i] = slip;
+    }
+
+    private void updateAcceleration(double forward, double strafe, double dt) {
+        if (dt > 0) {
+            double raw = Math.hypot(forward - lastForward, strafe - lastStrafe) / dt;
+            accel += 0.3 * (raw - accel); // pinpoint velocity is noisy when differentiated
+        }
+        lastForward = forward;
+        lastStrafe = strafe;
+    }
+}
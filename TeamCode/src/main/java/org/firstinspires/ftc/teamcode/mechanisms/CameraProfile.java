@@ -0,0 +1,87 @@
+package org.firstinspires.ftc.teamcode.mechanisms;
+
+import com.qualcomm.robotcore.util.ReadWriteFile;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.ExposureControl;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.GainControl;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.vision.VisionPortal;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CameraProfile — manual exposure and gain that worked best at one venue.
+ *
+ * Profiles are saved on the Control Hub as camera_profile_&lt;venue&gt;.txt by the exposure
+ * tuner, which also marks that venue as the active one. Every OpMode that opens the
+ * webcam then reapplies the active profile as soon as the camera is streaming.
+ */
+public class CameraProfile {
+
+    private static final String ACTIVE_FILE = "camera_venue.txt";
+
+    public final String venue;
+    public final int exposureMs;
+    public final int gain;
+
+    public CameraProfile(String venue, int exposureMs, int gain) {
+        this.venue = venue;
+        this.exposureMs = exposureMs;
+        this.gain = gain;
+    }
+
+    // the profile of the active venue, or null if the tuner has never been run
+    public static CameraProfile loadActive() {
+        File active = AppUtil.getInstance().getSettingsFile(ACTIVE_FILE);
+        if (!active.exists()) {
+            return null;
+        }
+        return load(ReadWriteFile.readFile(active).trim());
+    }
+
+    public static CameraProfile load(String venue) {
+        File file = AppUtil.getInstance().getSettingsFile(fileName(venue));
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            String[] parts = ReadWriteFile.readFile(file).trim().split(",");
+            return new CameraProfile(venue, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (RuntimeException e) {
+            RobotLog.ee("CameraProfile", e, "bad profile for %s", venue);
+            return null;
+        }
+    }
+
+    // saves this profile and makes it the one every OpMode uses
+    public void saveAsActive() {
+        ReadWriteFile.writeFile(AppUtil.getInstance().getSettingsFile(fileName(venue)),
+                String.format(Locale.US, "%d,%d", exposureMs, gain));
+        ReadWriteFile.writeFile(AppUtil.getInstance().getSettingsFile(ACTIVE_FILE), venue);
+    }
+
+    // returns false if the camera isn't streaming yet, try again next loop
+    public boolean apply(VisionPortal portal) {
+        return applyManual(portal, exposureMs, gain);
+    }
+
+    public static boolean applyManual(VisionPortal portal, int exposureMs, int gain) {
+        if (portal.getCameraState() != VisionPortal.CameraState.STREAMING) {
+            return false;
+        }
+        ExposureControl exposureControl = portal.getCameraControl(ExposureControl.class);
+        if (exposureControl.getMode() != ExposureControl.Mode.Manual) {
+            exposureControl.setMode(ExposureControl.Mode.Manual);
+        }
+        exposureControl.setExposure(exposureMs, TimeUnit.MILLISECONDS);
+        portal.getCameraControl(GainControl.class).setGain(gain);
+        return true;
+    }
+
+    private static String fileName(String venue) {
+        return "camera_profile_" + venue + ".txt";
+    }
+}
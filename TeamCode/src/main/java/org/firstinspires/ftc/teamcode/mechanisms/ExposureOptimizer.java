@@ -0,0 +1,192 @@
+package org.firstinspires.ftc.teamcode.mechanisms;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.ExposureControl;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.controls.GainControl;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ExposureOptimizer — sweeps exposure and gain with tags in view and keeps the best pair.
+
+Same idea as ConceptAprilTagOptimizeExposure, but automatic: every exposure / gain pair is
+held for a short window and scored on detections per frame times average decision margin,
+with a small penalty for longer exposure (more motion blur while driving). Non blocking,
+call update() from init_loop() until isDone(), right after vision.update(ALIGNING): the
+frames are the ones VisionBudget has taken, it owns the processor's fresh detections.
+ */
+public class ExposureOptimizer {
+
+    // TUNE THESE
+    private static final int[] EXPOSURES_MS = {2, 3, 5, 8, 12, 18};
+    private static final int GAIN_STEPS = 4;
+    private static final long SETTLE_MS = 150;   // camera takes a few frames to apply new settings
+    private static final long SAMPLE_MS = 500;
+    private static final double EXPOSURE_PENALTY = 0.01; // per ms
+
+    private enum Stage {
+        WAITING_FOR_CAMERA, SETTLING, SAMPLING, DONE
+    }
+
+    private VisionBudget vision;
+    private VisionPortal portal;
+    private String venue;
+
+    private Stage stage = Stage.WAITING_FOR_CAMERA;
+    private long stageStart = 0;
+
+    private int[] gains;
+    private int candidate = 0; // index into exposures x gains
+    private int candidateCount;
+
+    // current window
+    private int frames = 0;
+    private int lastFrameCount = 0;  // vision.getFreshFrameCount() at the last frame we looked at
+    private int detections = 0;
+    private double marginSum = 0;
+
+    // best so far
+    private double bestScore = -1;
+    private int bestExposure = 0;
+    private int bestGain = 0;
+    private CameraProfile result;
+
+    public ExposureOptimizer(VisionBudget vision, String venue) {
+        this.vision = vision;
+        this.portal = vision.getVisionPortal();
+        this.venue = venue;
+    }
+
+    public void update() {
+        long now = System.currentTimeMillis();
+
+        switch (stage) {
+            case WAITING_FOR_CAMERA:
+                if (portal.getCameraState() == VisionPortal.CameraState.STREAMING) {
+                    readGainRange();
+                    startCandidate(now);
+                }
+                break;
+
+            case SETTLING:
+                // frames taken with the old settings are skipped
+                lastFrameCount = vision.getFreshFrameCount();
+                if (now - stageStart >= SETTLE_MS) {
+                    frames = 0;
+                    detections = 0;
+                    marginSum = 0;
+                    stage = Stage.SAMPLING;
+                    stageStart = now;
+                }
+                break;
+
+            case SAMPLING:
+                int frameCount = vision.getFreshFrameCount();
+                if (frameCount != lastFrameCount) {
+                    // one update per loop, so at most one new frame since the last one
+                    lastFrameCount = frameCount;
+                    List<AprilTagDetection> fresh = vision.getLastFreshDetections();
+                    frames++;
+                    for (int i = 0; i < fresh.size(); i++) {
+                        detections++;
+                        marginSum += fresh.get(i).decisionMargin;
+                    }
+                }
+                if (now - stageStart >= SAMPLE_MS) {
+                    scoreCandidate();
+                    candidate++;
+                    if (candidate < candidateCount) {
+                        startCandidate(now);
+                    } else {
+                        finish();
+                    }
+                }
+                break;
+
+            case DONE:
+                break;
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("exposure sweep", stage == Stage.DONE ? "done" : "%d / %d", candidate, candidateCount);
+        if (bestScore >= 0) {
+            t.addData("best", "%d ms, gain %d (score %.1f)", bestExposure, bestGain, bestScore);
+        }
+        if (stage == Stage.DONE && result == null) {
+            t.addData("exposure sweep", "no tags seen, nothing saved");
+        }
+    }
+
+    // HELPER METHODS
+
+    public boolean isDone() {
+        return stage == Stage.DONE;
+    }
+
+    // the saved profile, null until done (or if no tag was ever seen)
+    public CameraProfile getResult() {
+        return result;
+    }
+
+    private void readGainRange() {
+        GainControl gainControl = portal.getCameraControl(GainControl.class);
+        int min = gainControl.getMinGain();
+        int max = gainControl.getMaxGain();
+        gains = new int[GAIN_STEPS];
+        for (int i = 0; i < GAIN_STEPS; i++) {
+            gains[i] = min + (max - min) * (i + 1) / GAIN_STEPS;
+        }
+
+        // don't ask for exposures the camera can't do
+        ExposureControl exposureControl = portal.getCameraControl(ExposureControl.class);
+        long minExposure = exposureControl.getMinExposure(TimeUnit.MILLISECONDS) + 1;
+        int first = 0;
+        while (first < EXPOSURES_MS.length - 1 && EXPOSURES_MS[first] < minExposure) {
+            first++;
+        }
+        candidate = first * GAIN_STEPS;
+        candidateCount = EXPOSURES_MS.length * GAIN_STEPS;
+    }
+
+    private void startCandidate(long now) {
+        CameraProfile.applyManual(portal, exposureOf(candidate), gainOf(candidate));
+        stage = Stage.SETTLING;
+        stageStart = now;
+    }
+
+    private void scoreCandidate() {
+        if (frames == 0 || detections == 0) {
+            return;
+        }
+        double perFrame = (double) detections / frames;
+        double margin = marginSum / detections;
+        double score = perFrame * margin * (1 - EXPOSURE_PENALTY * exposureOf(candidate));
+        if (score > bestScore) {
+            bestScore = score;
+            bestExposure = exposureOf(candidate);
+            bestGain = gainOf(candidate);
+        }
+    }
+
+    private void finish() {
+        stage = Stage.DONE;
+        if (bestScore < 0) {
+            return;
+        }
+        result = new CameraProfile(venue, bestExposure, bestGain);
+        result.apply(portal);
+        result.saveAsActive();
+    }
+
+    private int exposureOf(int index) {
+        return EXPOSURES_MS[index / GAIN_STEPS];
+    }
+
+    private int gainOf(int index) {
+        return gains[index % GAIN_STEPS];
+    }
+}
@@ -0,0 +1,217 @@
+package org.firstinspires.ftc.teamcode.mechanisms;
+
+import android.util.Size;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+
+import java.util.List;
+
+/*
+MultiCameraLocalizer — AprilTag field localisation from two or more webcams.
+
+Every camera streams, but only one AprilTag processor is enabled at a time. The active
+camera rotates every SLOT_MS, so total decode cost stays about the same as one camera
+while tags are seen whichever way the robot faces. With a single camera its processor
+just stays on. Every camera's fresh detections are read each update, so a frame that
+was still being decoded when its slot ended isn't lost.
+
+Each processor knows its own camera mount (setCameraPose), so every detection already
+gives a robot pose. Each update gathers the detections of every camera first and merges
+them all, weighted by decision margin, into one timestamped measurement (field frame,
+mm / radians), so two cameras seeing tags in the same loop back each other up.
+
+Bench only: it builds its own portals, so the CameraLocalization OpMode releases the
+session camera (RobotSession.releaseCamera()) first. Teleop and auto don't use it.
+ */
+public class MultiCameraLocalizer {
+
+    // TUNE THIS
+    private static final long SLOT_MS = 60;          // about two frames at 30 fps
+    private static final double MIN_DECISION_MARGIN = 20;
+
+    private final int cameraCount;
+    private final String[] names;
+    private final VisionPortal[] portals;
+    private final AprilTagProcessor[] processors;
+    private int active = 0;
+    private long slotStart = 0;
+
+    // per camera stats
+    private final double[] fpsSum;
+    private final double[] latencySumMs;
+    private final int[] fpsSamples;
+    private final int[] latencySamples;
+
+    // merged measurement, reused every time
+    private double measuredX, measuredY, measuredHeading;
+    private long measuredNanos = 0;
+    private int measuredTags = 0;
+    private int measurementCount = 0;
+    private boolean fresh = false;
+
+    // running sums for the update in progress, across every camera
+    private double sumX, sumY, sumSin, sumCos, sumWeight;
+    private long newest;
+    private int tags;
+
+    public MultiCameraLocalizer(WebcamName[] cameras, Position[] positions, YawPitchRollAngles[] orientations) {
+        cameraCount = cameras.length;
+        names = new String[cameraCount];
+        portals = new VisionPortal[cameraCount];
+        processors = new AprilTagProcessor[cameraCount];
+        fpsSum = new double[cameraCount];
+        latencySumMs = new double[cameraCount];
+        fpsSamples = new int[cameraCount];
+        latencySamples = new int[cameraCount];
+
+        for (int i = 0; i < cameraCount; i++) {
+            names[i] = cameras[i].getDeviceName();
+            processors[i] = new AprilTagProcessor.Builder()
+                    .setCameraPose(positions[i], orientations[i])
+                    .setOutputUnits(DistanceUnit.MM, AngleUnit.RADIANS)
+                    .build();
+            portals[i] = new VisionPortal.Builder()
+                    .setCamera(cameras[i])
+                    .setCameraResolution(new Size(640, 480))
+                    .addProcessor(processors[i])
+                    .enableLiveView(false)
+                    .build();
+            portals[i].setProcessorEnabled(processors[i], i == 0);
+        }
+        slotStart = System.currentTimeMillis();
+    }
+
+    // call every loop
+    public void update() {
+        long now = System.currentTimeMillis();
+
+        // collect whatever every camera decoded since last time (the camera that just lost
+        // its slot may still finish a frame), then solve once from all of it
+        clearSums();
+        for (int i = 0; i < cameraCount; i++) {
+            List<AprilTagDetection> detections = processors[i].getFreshDetections();
+            if (detections != null) {
+                accumulate(detections);
+                sampleStats(i, detections);
+            }
+        }
+        merge();
+
+        // hand decoding over to the next camera
+        if (cameraCount > 1 && now - slotStart >= SLOT_MS) {
+            portals[active].setProcessorEnabled(processors[active], false);
+            active = (active + 1) % cameraCount;
+            portals[active].setProcessorEnabled(processors[active], true);
+            slotStart = now;
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        for (int i = 0; i < cameraCount; i++) {
+            t.addData("camera " + names[i], "%.1f fps, %.0f ms",
+                    fpsSamples[i] == 0 ? 0 : fpsSum[i] / fpsSamples[i],
+                    latencySamples[i] == 0 ? 0 : latencySumMs[i] / latencySamples[i]);
+        }
+        if (measurementCount > 0) {
+            t.addData("vision pose", "%.0f, %.0f mm  %.1f deg  (%d tags)",
+                    measuredX, measuredY, Math.toDegrees(measuredHeading), measuredTags);
+        }
+    }
+
+    public void stop() {
+        for (VisionPortal portal : portals) {
+            portal.close();
+        }
+    }
+
+    // HELPER METHODS
+
+    // true once per new measurement
+    public boolean hasNewMeasurement() {
+        boolean result = fresh;
+        fresh = false;
+        return result;
+    }
+
+    public double getX() {
+        return measuredX;
+    }
+
+    public double getY() {
+        return measuredY;
+    }
+
+    public double getHeading() {
+        return measuredHeading;
+    }
+
+    // System.nanoTime() of the frame the measurement came from
+    public long getTimestampNanos() {
+        return measuredNanos;
+    }
+
+    public int getTagCount() {
+        return measuredTags;
+    }
+
+    private void clearSums() {
+        sumX = 0;
+        sumY = 0;
+        sumSin = 0;
+        sumCos = 0;
+        sumWeight = 0;
+        newest = 0;
+        tags = 0;
+    }
+
+    private void accumulate(List<AprilTagDetection> detections) {
+        for (int i = 0; i < detections.size(); i++) {
+            AprilTagDetection detection = detections.get(i);
+            // robotPose needs the tag's field position, unknown tags don't have one
+            if (detection.metadata == null || detection.robotPose == null
+                    || detection.decisionMargin < MIN_DECISION_MARGIN) {
+                continue;
+            }
+            double weight = detection.decisionMargin;
+            double yaw = detection.robotPose.getOrientation().getYaw(AngleUnit.RADIANS);
+            sumX += weight * detection.robotPose.getPosition().x;
+            sumY += weight * detection.robotPose.getPosition().y;
+            sumSin += weight * Math.sin(yaw);
+            sumCos += weight * Math.cos(yaw);
+            sumWeight += weight;
+            newest = Math.max(newest, detection.frameAcquisitionNanoTime);
+            tags++;
+        }
+    }
+
+    private void merge() {
+        // a late frame from the previous slot mustn't replace a newer measurement
+        if (tags == 0 || newest < measuredNanos) {
+            return;
+        }
+        measuredX = sumX / sumWeight;
+        measuredY = sumY / sumWeight;
+        measuredHeading = Math.atan2(sumSin, sumCos);
+        measuredNanos = newest;
+        measuredTags = tags;
+        measurementCount++;
+        fresh = true;
+    }
+
+    private void sampleStats(int camera, List<AprilTagDetection> detections) {
+        fpsSum[camera] += portals[camera].getFps();
+        fpsSamples[camera]++;
+        if (!detections.isEmpty()) {
+            latencySumMs[camera] += (System.nanoTime() - detections.get(0).frameAcquisitionNanoTime) / 1e6;
+            latencySamples[camera]++;
+        }
+    }
+}
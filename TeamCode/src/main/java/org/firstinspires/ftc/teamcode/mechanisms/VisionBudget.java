@@ -0,0 +1,327 @@
+package org.firstinspires.ftc.teamcode.mechanisms;
+
+import android.util.Size;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.teamcode.HardwareMapConfig;
+import org.firstinspires.ftc.teamcode.MatchHandoff;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+import org.firstinspires.ftc.vision.opencv.ColorBlobLocatorProcessor;
+import org.firstinspires.ftc.vision.opencv.ColorRange;
+import org.firstinspires.ftc.vision.opencv.ImageRegion;
+
+import java.util.List;
+
+/*
+VisionBudget — owns the webcam portal and only runs the vision work the current robot mode needs.
+
+DRIVING  - apriltag on, high decimation (cheap, just keeps localisation fed)
+ALIGNING - apriltag on, low decimation (better range / bearing at the goal), goal read every new frame
+INTAKING - colour locator on, apriltag off
+IDLE     - streaming stopped, zero vision cpu
+
+FPS and frame latency are averaged separately for each mode so we can see what each one costs.
+ */
+public class VisionBudget {
+
+    public enum RobotMode {
+        DRIVING, ALIGNING, INTAKING, IDLE
+    }
+
+    // values() copies the array every call, keep one
+    private static final RobotMode[] MODES = RobotMode.values();
+    private static final int MODE_COUNT = MODES.length;
+
+    // per mode settings, indexed by RobotMode.ordinal()
+    // TUNE THESE
+    private static final boolean[] TAGS_ON     = {true, true, false, false};
+    private static final boolean[] COLOUR_ON   = {false, false, true, false};
+    private static final float[]   DECIMATION  = {3, 2, 3, 3};
+    private static final boolean[] STREAMING   = {true, true, true, false};
+
+    // stopping and resuming the camera is slow, so only go idle after this long
+    private static final long IDLE_DELAY_MS = 1000;
+    // how often fps / latency are sampled (getDetections() allocates a list)
+    private static final long SAMPLE_PERIOD_MS = 250;
+    // goal tag range older than this is ignored
+    private static final long GOAL_RANGE_MAX_AGE_MS = 500;
+    // DECODE goal tags, 20 = blue goal, 24 = red goal
+    private static final int BLUE_GOAL_TAG = 20;
+    private static final int RED_GOAL_TAG = 24;
+
+    private AprilTagProcessor aprilTag;
+    private ColorBlobLocatorProcessor colourLocator;
+    private VisionPortal visionPortal;
+
+    private RobotMode mode = RobotMode.DRIVING;
+    private RobotMode requestedMode = RobotMode.DRIVING;
+    private long requestedSince = 0;
+    private long lastSampleTime = 0;
+
+    // running averages per mode
+    private final double[] fpsSum = new double[MODE_COUNT];
+    private final int[] fpsSamples = new int[MODE_COUNT];
+    private final double[] latencySumMs = new double[MODE_COUNT];
+    private final int[] latencySamples = new int[MODE_COUNT];
+
+    // manual exposure / gain for this venue, applied once the camera streams
+    private CameraProfile profile;
+    private boolean profileApplied = false;
+
+    // only our own goal counts once the alliance is known
+    private int goalTag = -1;
+
+    // last seen goal tag range
+    private double goalRangeMm = 0;
+    private long goalRangeTime = 0;
+    // and bearing, radians (positive = goal to the left), with the frame's capture time
+    private double goalBearingRad = 0;
+    private long goalFrameNanos = 0;
+    private boolean goalBearingSeen = false;
+
+    // ALIGNING takes the processor's fresh detections itself, other readers use these instead
+    private List<AprilTagDetection> lastFresh = null;
+    private int freshFrames = 0;
+
+    // MAIN METHODS
+
+    public VisionBudget(HardwareMapConfig hw) {
+        this(hw.webcam);
+    }
+
+    public VisionBudget(WebcamName webcam) {
+        aprilTag = new AprilTagProcessor.Builder().build();
+
+        colourLocator = new ColorBlobLocatorProcessor.Builder()
+                .setTargetColorRange(ColorRange.ARTIFACT_PURPLE)
+                .setContourMode(ColorBlobLocatorProcessor.ContourMode.EXTERNAL_ONLY)
+                .setRoi(ImageRegion.asUnityCenterCoordinates(-0.75, 0.75, 0.75, -0.75))
+                .setBlurSize(5)
+                .build();
+
+        visionPortal = new VisionPortal.Builder()
+                .setCamera(webcam)
+                .setCameraResolution(new Size(640, 480))
+                .addProcessors(aprilTag, colourLocator)
+                .enableLiveView(false) // live view costs cpu we want for the control loop
+                .build();
+
+        profile = CameraProfile.loadActive();
+        applyMode(mode);
+    }
+
+    // call once per loop with the mode the robot is currently in
+    public void update(RobotMode wanted) {
+        long now = System.currentTimeMillis();
+
+        if (wanted != requestedMode) {
+            requestedMode = wanted;
+            requestedSince = now;
+        }
+
+        // change straight away, except going idle which waits so we don't bounce the camera
+        if (requestedMode != mode) {
+            if (requestedMode != RobotMode.IDLE || now - requestedSince >= IDLE_DELAY_MS) {
+                applyMode(requestedMode);
+            }
+        }
+
+        if (profile != null && !profileApplied) {
+            profileApplied = profile.apply(visionPortal);
+        }
+
+        if (now - lastSampleTime >= SAMPLE_PERIOD_MS) {
+            lastSampleTime = now;
+            sampleStats();
+        }
+
+        // aiming needs every frame, not 4 a second, and fresh detections only allocate when there's a new one
+        if (mode == RobotMode.ALIGNING) {
+            List<AprilTagDetection> fresh = aprilTag.getFreshDetections();
+            if (fresh != null) {
+                lastFresh = fresh;
+                freshFrames++;
+                readGoal(fresh);
+            }
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("vision mode", mode);
+        if (profile != null) {
+            t.addData("camera profile", "%s (%d ms, gain %d)", profile.venue, profile.exposureMs, profile.gain);
+        }
+        for (RobotMode m : MODES) {
+            int i = m.ordinal();
+            if (fpsSamples[i] > 0) {
+                t.addData("vision " + m, "%.1f fps, %.0f ms", getAverageFps(m), getAverageLatencyMs(m));
+            }
+        }
+    }
+
+    // the control loop is overrunning: drop straight to IDLE without the usual delay,
+    // the next update() with a real mode turns processing back on
+    public void shed() {
+        requestedMode = RobotMode.IDLE;
+        requestedSince = System.currentTimeMillis();
+        if (mode != RobotMode.IDLE) {
+            applyMode(RobotMode.IDLE);
+        }
+    }
+
+    // end of an opmode: stop paying for frames but keep the camera open for the next one
+    public void stop() {
+        visionPortal.setProcessorEnabled(aprilTag, false);
+        visionPortal.setProcessorEnabled(colourLocator, false);
+        if (visionPortal.getCameraState() == VisionPortal.CameraState.STREAMING) {
+            visionPortal.stopStreaming();
+        }
+        mode = RobotMode.IDLE;
+    }
+
+    // start of an opmode that reuses this portal
+    public void resume() {
+        profile = CameraProfile.loadActive(); // the tuner may have saved a new one
+        profileApplied = false;
+        requestedMode = RobotMode.DRIVING;
+        applyMode(RobotMode.DRIVING);
+    }
+
+    // false once the camera has been closed or has failed, then it has to be rebuilt
+    public boolean isUsable() {
+        VisionPortal.CameraState cameraState = visionPortal.getCameraState();
+        return cameraState != VisionPortal.CameraState.CAMERA_DEVICE_CLOSED
+                && cameraState != VisionPortal.CameraState.CLOSING_CAMERA_DEVICE
+                && cameraState != VisionPortal.CameraState.ERROR;
+    }
+
+    public void close() {
+        visionPortal.close();
+    }
+
+    // HELPER METHODS
+
+    public RobotMode getMode() {
+        return mode;
+    }
+
+    public AprilTagProcessor getAprilTag() {
+        return aprilTag;
+    }
+
+    public ColorBlobLocatorProcessor getColourLocator() {
+        return colourLocator;
+    }
+
+    public VisionPortal getVisionPortal() {
+        return visionPortal;
+    }
+
+    public void setAlliance(MatchHandoff.Alliance alliance) {
+        goalTag = alliance == MatchHandoff.Alliance.RED ? RED_GOAL_TAG : BLUE_GOAL_TAG;
+    }
+
+    // range to the goal tag in mm, or -1 if it hasn't been seen recently
+    public double getGoalRangeMm() {
+        if (System.currentTimeMillis() - goalRangeTime > GOAL_RANGE_MAX_AGE_MS) {
+            return -1;
+        }
+        return goalRangeMm;
+    }
+
+    // true if the goal tag has been seen, the bearing and frame time below are the latest ones
+    public boolean hasGoalBearing() {
+        return goalBearingSeen;
+    }
+
+    public double getGoalBearingRad() {
+        return goalBearingRad;
+    }
+
+    // System.nanoTime() of the frame the goal bearing came from
+    public long getGoalFrameNanos() {
+        return goalFrameNanos;
+    }
+
+    // frames taken in ALIGNING so far, goes up by one per new frame
+    public int getFreshFrameCount() {
+        return freshFrames;
+    }
+
+    // detections of the latest of those frames, null before the first; don't call
+    // aprilTag.getFreshDetections() yourself while in ALIGNING, this already has them
+    public List<AprilTagDetection> getLastFreshDetections() {
+        return lastFresh;
+    }
+
+    public double getAverageFps(RobotMode m) {
+        int i = m.ordinal();
+        return fpsSamples[i] == 0 ? 0 : fpsSum[i] / fpsSamples[i];
+    }
+
+    public double getAverageLatencyMs(RobotMode m) {
+        int i = m.ordinal();
+        return latencySamples[i] == 0 ? 0 : latencySumMs[i] / latencySamples[i];
+    }
+
+    private void applyMode(RobotMode newMode) {
+        int i = newMode.ordinal();
+
+        if (STREAMING[i]) {
+            if (visionPortal.getCameraState() == VisionPortal.CameraState.CAMERA_DEVICE_READY) {
+                visionPortal.resumeStreaming();
+            }
+            aprilTag.setDecimation(DECIMATION[i]);
+            visionPortal.setProcessorEnabled(aprilTag, TAGS_ON[i]);
+            visionPortal.setProcessorEnabled(colourLocator, COLOUR_ON[i]);
+        } else {
+            visionPortal.setProcessorEnabled(aprilTag, false);
+            visionPortal.setProcessorEnabled(colourLocator, false);
+            if (visionPortal.getCameraState() == VisionPortal.CameraState.STREAMING) {
+                visionPortal.stopStreaming();
+            }
+        }
+
+        mode = newMode;
+    }
+
+    private void sampleStats() {
+        int i = mode.ordinal();
+        if (!STREAMING[i] || visionPortal.getCameraState() != VisionPortal.CameraState.STREAMING) {
+            return;
+        }
+
+        fpsSum[i] += visionPortal.getFps();
+        fpsSamples[i]++;
+
+        // latency = time from frame capture to now, only tags carry a capture timestamp
+        if (TAGS_ON[i]) {
+            List<AprilTagDetection> detections = aprilTag.getDetections();
+            if (!detections.isEmpty()) {
+                long ageNs = System.nanoTime() - detections.get(0).frameAcquisitionNanoTime;
+                latencySumMs[i] += ageNs / 1e6;
+                latencySamples[i]++;
+            }
+            readGoal(detections);
+        }
+    }
+
+    private void readGoal(List<AprilTagDetection> detections) {
+        for (int d = 0; d < detections.size(); d++) {
+            AprilTagDetection detection = detections.get(d);
+            boolean isGoal = goalTag < 0
+                    ? detection.id == BLUE_GOAL_TAG || detection.id == RED_GOAL_TAG
+                    : detection.id == goalTag;
+            if (detection.ftcPose != null && isGoal) {
+                goalRangeMm = detection.ftcPose.range * 25.4; // ftcPose is in inches
+                goalRangeTime = System.currentTimeMillis();
+                goalBearingRad = Math.toRadians(detection.ftcPose.bearing); // ftcPose angles are in degrees
+                goalFrameNanos = detection.frameAcquisitionNanoTime;
+                goalBearingSeen = true;
+            }
+        }
+    }
+}
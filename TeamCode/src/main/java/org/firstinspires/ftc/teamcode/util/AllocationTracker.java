@@ -0,0 +1,181 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * AllocationTracker — counts heap allocations made inside named sections of the loop.
+ *
+ * Wrap each subsystem call in begin(id) / end(id) and call endCycle() once per loop.
+ * Any section that allocates is logged the first time it happens and counted after that,
+ * so a "garbage free" loop shows zeros across the board.
+ *
+ * On the robot this uses the ART per-thread allocation counter (objects). The JVM tests
+ * (TeamCode/src/test) pass in their own Counter over ThreadMXBean allocated bytes. Reading
+ * the counter must not allocate itself, there is no overhead calibration to hide it. In
+ * strict mode an allocating section throws, which is how HotPathAllocationTest fails as
+ * soon as a hot path starts allocating.
+ *
+ * When disabled every call is a no-op, so it can stay wired into the OpModes.
+ */
+public class AllocationTracker {
+
+    // per-thread allocation count, read twice per section, must not allocate
+    public interface Counter {
+        long read();
+
+        String unit();
+    }
+
+    private static final int MAX_SECTIONS = 16;
+
+    private final String[] names = new String[MAX_SECTIONS];
+    private final long[] startCount = new long[MAX_SECTIONS];
+    private final long[] cycleAllocs = new long[MAX_SECTIONS];   // this cycle
+    private final long[] maxAllocs = new long[MAX_SECTIONS];     // worst single cycle
+    private final long[] allocCycles = new long[MAX_SECTIONS];   // cycles in which it allocated
+    private final boolean[] reported = new boolean[MAX_SECTIONS];
+    private int sectionCount = 0;
+
+    private final boolean enabled;
+    private boolean strict = false;
+    private long cycles = 0;
+
+    private final boolean onRobot;
+    private final Counter counter;    // null on the robot (Debug counter) or when disabled
+
+    // the OpModes: ART's counter on the robot, off anywhere else
+    public AllocationTracker(boolean enabled) {
+        onRobot = "Dalvik".equals(System.getProperty("java.vm.name"));
+        counter = null;
+        this.enabled = enabled && startCounting();
+    }
+
+    // the JVM tests, always on
+    public AllocationTracker(Counter counter) {
+        onRobot = false;
+        this.counter = counter;
+        this.enabled = true;
+    }
+
+    // register a section at init, the returned id is used in begin / end
+    public int section(String name) {
+        if (sectionCount == MAX_SECTIONS) {
+            throw new IllegalStateException("too many allocation sections");
+        }
+        names[sectionCount] = name;
+        return sectionCount++;
+    }
+
+    public void begin(int id) {
+        if (!enabled) return;
+        startCount[id] = readCounter();
+    }
+
+    public void end(int id) {
+        if (!enabled) return;
+        long allocated = readCounter() - startCount[id];
+        if (allocated > 0) {
+            cycleAllocs[id] += allocated;
+        }
+    }
+
+    // call once at the end of every loop
+    public void endCycle() {
+        if (!enabled) return;
+        cycles++;
+        for (int i = 0; i < sectionCount; i++) {
+            long allocated = cycleAllocs[i];
+            if (allocated == 0) continue;
+
+            allocCycles[i]++;
+            if (allocated > maxAllocs[i]) {
+                maxAllocs[i] = allocated;
+            }
+            if (!reported[i]) {
+                reported[i] = true;
+                RobotLog.ww("AllocationTracker", "%s allocated %d %s in loop()", names[i], allocated, unit());
+            }
+            cycleAllocs[i] = 0;
+            if (strict) {
+                throw new IllegalStateException(names[i] + " allocated " + allocated + " " + unit() + " in loop()");
+            }
+        }
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        if (!enabled) return;
+        for (int i = 0; i < sectionCount; i++) {
+            if (allocCycles[i] > 0) {
+                t.addData("allocs " + names[i], "%d of %d cycles, max %d %s", allocCycles[i], cycles, maxAllocs[i], unit());
+            }
+        }
+    }
+
+    public void stop() {
+        if (!enabled) return;
+        for (int i = 0; i < sectionCount; i++) {
+            RobotLog.ii("AllocationTracker", "%s: allocated in %d of %d cycles, max %d %s",
+                    names[i], allocCycles[i], cycles, maxAllocs[i], unit());
+        }
+        if (onRobot) {
+            android.os.Debug.stopAllocCounting();
+        }
+    }
+
+    // HELPER METHODS
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // throw from endCycle() as soon as any section allocates
+    public void setStrict(boolean strict) {
+        this.strict = strict;
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public long getAllocCycles(int id) {
+        return allocCycles[id];
+    }
+
+    public long getMaxAllocs(int id) {
+        return maxAllocs[id];
+    }
+
+    // total cycles in which anything allocated
+    public long getTotalAllocCycles() {
+        long total = 0;
+        for (int i = 0; i < sectionCount; i++) {
+            total += allocCycles[i];
+        }
+        return total;
+    }
+
+    public String unit() {
+        return counter != null ? counter.unit() : "objects";
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean startCounting() {
+        if (!onRobot) {
+            RobotLog.ww("AllocationTracker", "no allocation counter on this vm, tracking off");
+            return false;
+        }
+        android.os.Debug.startAllocCounting();
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    private long readCounter() {
+        return counter != null ? counter.read() : android.os.Debug.getThreadAllocCount();
+    }
+}
@@ -0,0 +1,196 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * LoopDeadline — watches the loop period against a budget and sheds work when it keeps overrunning.
+ *
+ * Every loop that runs long is another loop where the drive motors hold a stale command,
+ * so when too many of the recent cycles overrun, work is shed one level at a time:
+ *   TELEMETRY - telemetry is only built and sent a few times a second
+ *   VISION    - camera processing stops
+ *   SENSORS   - non-critical i2c reads (current, voltage, idle distance sensor) slow down or stop
+ * A level is restored once the loop has been comfortably inside the budget for a while.
+ * Restoring straight back into overruns doubles the wait before that level is tried again,
+ * so a marginal loop doesn't flap. Every shed / restore goes to the robot log.
+ *
+ * The period is measured from the start of one loop() to the start of the next, so it
+ * includes the SDK's own work between loops, which is what the motors actually see.
+ */
+public class LoopDeadline {
+
+    // in shedding order, each level includes the ones before it
+    public enum Shed {
+        NONE, TELEMETRY, VISION, SENSORS
+    }
+
+    private static final Shed[] LEVELS = Shed.values();
+
+    // TUNE THESE
+    private static final int WINDOW = 20;                  // cycles looked at for each decision
+    private static final int SHED_OVERRUNS = 5;            // overruns in the window that count as sustained
+    private static final double RESTORE_FRACTION = 0.7;    // average period must be under 70% of the budget
+    private static final long RESTORE_HOLD_MS = 2000;      // time at a level before restoring it
+    private static final long MAX_RESTORE_HOLD_MS = 30000;
+    private static final long SHED_TELEMETRY_MS = 500;     // telemetry period while it is shed
+
+    private final double budgetMs;
+
+    // last WINDOW cycles
+    private final double[] periods = new double[WINDOW];
+    private final boolean[] overran = new boolean[WINDOW];
+    private int index = 0;
+    private int filled = 0;
+    private int overrunCount = 0;
+    private double periodSum = 0;
+
+    private Shed level = Shed.NONE;
+    private long levelSince = 0;
+    private long lastRestoreTime = 0;
+    private long restoreHoldMs = RESTORE_HOLD_MS;
+    private long lastStart = 0;
+    private double lastPeriodMs = 0;
+    private long lastTelemetry = 0;
+
+    // stats
+    private long cycles = 0;
+    private long totalOverruns = 0;
+    private double worstMs = 0;
+    private int shedEvents = 0;
+    private long skippedTelemetry = 0;
+
+    public LoopDeadline(double budgetMs) {
+        this.budgetMs = budgetMs;
+    }
+
+    // call first thing in every loop()
+    public void startCycle() {
+        long now = System.nanoTime();
+        if (lastStart != 0) {
+            lastPeriodMs = (now - lastStart) / 1e6;
+            record(lastPeriodMs, now / 1000000);
+        }
+        lastStart = now;
+    }
+
+    // true when the loop should build and send telemetry this cycle
+    public boolean telemetryDue() {
+        if (!isShed(Shed.TELEMETRY)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastTelemetry >= SHED_TELEMETRY_MS) {
+            lastTelemetry = now;
+            return true;
+        }
+        skippedTelemetry++;
+        return false;
+    }
+
+    public void updateTelemetry(Telemetry t) {
+        t.addData("loop", "%.1f ms avg / %.0f budget, worst %.0f", getAveragePeriodMs(), budgetMs, worstMs);
+        t.addData("loop overruns", "%d of %d, shed %s (%d times)", totalOverruns, cycles, level, shedEvents);
+    }
+
+    // after a pause (init -> start, auto -> teleop) the first gap isn't a real cycle
+    public void reset() {
+        lastStart = 0;
+        clearWindow();
+    }
+
+    // HELPER METHODS
+
+    // true if this kind of work is currently shed
+    public boolean isShed(Shed work) {
+        return level.ordinal() >= work.ordinal();
+    }
+
+    public Shed getLevel() {
+        return level;
+    }
+
+    // period of the cycle that just ended
+    public double getLastPeriodMs() {
+        return lastPeriodMs;
+    }
+
+    public double getAveragePeriodMs() {
+        return filled == 0 ? 0 : periodSum / filled;
+    }
+
+    public long getTotalOverruns() {
+        return totalOverruns;
+    }
+
+    public double getWorstMs() {
+        return worstMs;
+    }
+
+    public int getShedEvents() {
+        return shedEvents;
+    }
+
+    // cycles that skipped telemetry because it was shed
+    public long getSkippedTelemetry() {
+        return skippedTelemetry;
+    }
+
+    private void record(double periodMs, long nowMs) {
+        cycles++;
+        boolean over = periodMs > budgetMs;
+        if (over) totalOverruns++;
+        worstMs = Math.max(worstMs, periodMs);
+
+        // replace the oldest cycle in the window
+        if (filled == WINDOW) {
+            periodSum -= periods[index];
+            if (overran[index]) overrunCount--;
+        } else {
+            filled++;
+        }
+        periods[index] = periodMs;
+        overran[index] = over;
+        periodSum += periodMs;
+        if (over) overrunCount++;
+        index = (index + 1) % WINDOW;
+
+        // only decide on a full window, so one slow cycle (gc, a hub retry) never sheds anything
+        if (filled < WINDOW) {
+            return;
+        }
+
+        if (overrunCount >= SHED_OVERRUNS && level != Shed.SENSORS) {
+            // shedding again right after a restore means that restore was too early
+            if (lastRestoreTime != 0 && nowMs - lastRestoreTime < restoreHoldMs) {
+                restoreHoldMs = Math.min(restoreHoldMs * 2, MAX_RESTORE_HOLD_MS);
+            }
+            setLevel(LEVELS[level.ordinal() + 1], nowMs);
+            shedEvents++;
+            RobotLog.ww("LoopDeadline", "%d of the last %d loops over %.0f ms (avg %.1f ms), shedding %s",
+                    overrunCount, WINDOW, budgetMs, periodSum / WINDOW, level);
+        } else if (level != Shed.NONE && overrunCount == 0
+                && periodSum / WINDOW < budgetMs * RESTORE_FRACTION
+                && nowMs - levelSince >= restoreHoldMs) {
+            Shed restored = level;
+            setLevel(LEVELS[level.ordinal() - 1], nowMs);
+            lastRestoreTime = nowMs;
+            RobotLog.ii("LoopDeadline", "loop back to %.1f ms avg, restoring %s", periodSum / WINDOW, restored);
+        }
+    }
+
+    private void setLevel(Shed newLevel, long nowMs) {
+        level = newLevel;
+        levelSince = nowMs;
+        // the old window was measured with different work running
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        index = 0;
+        filled = 0;
+        overrunCount = 0;
+        periodSum = 0;
+    }
+}
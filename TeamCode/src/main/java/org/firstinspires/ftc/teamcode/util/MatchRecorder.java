@@ -0,0 +1,263 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * MatchRecorder — loop statistics for one OpMode run, appended to match_history.jsonl at stop.
+ *
+ * Wrap each subsystem in begin(id) / end(id) and call endCycle() once per loop, the same
+ * way as AllocationTracker (which it forwards to, so each section is only wrapped once).
+ * Loop periods go into a fixed histogram, so percentiles cost nothing per cycle. The
+ * battery is read every few seconds for the voltage curve. The first loop's section time and
+ * the worst period of the opening seconds are kept apart, that's where JIT warm-up shows. OpModes add anything else
+ * worth keeping (vision fps, jams, shed events) with put() before save().
+ *
+ * One json object per line, tagged with the install time of the app so runs can be grouped
+ * by code push. tools/loop_history_report.py turns the file into a trend report.
+ */
+public class MatchRecorder {
+
+    public static final String FILE_NAME = "match_history.jsonl";
+
+    private static final int MAX_SECTIONS = 16;
+    private static final int MAX_EXTRAS = 24;
+    // TUNE THESE
+    private static final double BIN_MS = 0.25;            // histogram resolution
+    private static final int BINS = 800;                  // up to 200 ms, longer goes in the last bin
+    private static final long BATTERY_SAMPLE_MS = 5000;
+    private static final int MAX_BATTERY_SAMPLES = 64;    // 5 minutes at 5 s
+    private static final long OPENING_NS = 3000000000L;   // first 3 s of loops
+
+    private final String opMode;
+    private final AllocationTracker allocs;
+    private final VoltageSensor battery;
+
+    // sections
+    private final String[] names = new String[MAX_SECTIONS];
+    private final long[] startNs = new long[MAX_SECTIONS];
+    private final long[] totalNs = new long[MAX_SECTIONS];
+    private final long[] maxNs = new long[MAX_SECTIONS];
+    private final long[] cycleNs = new long[MAX_SECTIONS];
+    private int sectionCount = 0;
+
+    // loop period
+    private final int[] histogram = new int[BINS];
+    private long lastCycleNs = 0;
+    private long cycles = 0;
+    private double worstMs = 0;
+    private long firstCycleNs = 0;
+    private double firstLoopMs = 0;       // section time of the very first loop
+    private double openingWorstMs = 0;
+
+    // battery curve
+    private final double[] batteryVolts = new double[MAX_BATTERY_SAMPLES];
+    private int batterySamples = 0;
+    private long lastBatterySample = 0;
+
+    // anything else the opmode wants kept
+    private final String[] extraKeys = new String[MAX_EXTRAS];
+    private final double[] extraValues = new double[MAX_EXTRAS];
+    private int extraCount = 0;
+
+    private final long startTime;
+    private final long gcCountAtStart;
+    private final long gcTimeAtStart;
+    private boolean saved = false;
+
+    // allocs may be null when allocation tracking isn't wired into the opmode
+    public MatchRecorder(String opMode, AllocationTracker allocs, VoltageSensor battery) {
+        this.opMode = opMode;
+        this.allocs = allocs;
+        this.battery = battery;
+        startTime = System.currentTimeMillis();
+        gcCountAtStart = runtimeStat("art.gc.gc-count");
+        gcTimeAtStart = runtimeStat("art.gc.gc-time");
+    }
+
+    // register a section at init, the returned id is used in begin / end
+    public int section(String name) {
+        if (sectionCount == MAX_SECTIONS) {
+            throw new IllegalStateException("too many recorder sections");
+        }
+        if (allocs != null) {
+            allocs.section(name);
+        }
+        names[sectionCount] = name;
+        return sectionCount++;
+    }
+
+    public void begin(int id) {
+        if (allocs != null) allocs.begin(id);
+        startNs[id] = System.nanoTime();
+    }
+
+    public void end(int id) {
+        cycleNs[id] += System.nanoTime() - startNs[id];
+        if (allocs != null) allocs.end(id);
+    }
+
+    // call once at the end of every loop
+    public void endCycle() {
+        long now = System.nanoTime();
+        if (lastCycleNs != 0) {
+            double periodMs = (now - lastCycleNs) / 1e6;
+            histogram[Math.min(BINS - 1, (int) (periodMs / BIN_MS))]++;
+            worstMs = Math.max(worstMs, periodMs);
+            if (now - firstCycleNs < OPENING_NS) {
+                openingWorstMs = Math.max(openingWorstMs, periodMs);
+            }
+            cycles++;
+        } else {
+            firstCycleNs = now;
+            for (int i = 0; i < sectionCount; i++) {
+                firstLoopMs += cycleNs[i] / 1e6;
+            }
+        }
+        lastCycleNs = now;
+
+        for (int i = 0; i < sectionCount; i++) {
+            totalNs[i] += cycleNs[i];
+            maxNs[i] = Math.max(maxNs[i], cycleNs[i]);
+            cycleNs[i] = 0;
+        }
+        if (allocs != null) {
+            allocs.endCycle();
+        }
+
+        long nowMs = System.currentTimeMillis();
+        if (battery != null && batterySamples < MAX_BATTERY_SAMPLES && nowMs - lastBatterySample >= BATTERY_SAMPLE_MS) {
+            batteryVolts[batterySamples++] = battery.getVoltage();
+            lastBatterySample = nowMs;
+        }
+    }
+
+    // extra numbers for this run, e.g. put("vision_fps_driving", 28.5)
+    public void put(String key, double value) {
+        for (int i = 0; i < extraCount; i++) {
+            if (extraKeys[i].equals(key)) {
+                extraValues[i] = value;
+                return;
+            }
+        }
+        if (extraCount < MAX_EXTRAS) {
+            extraKeys[extraCount] = key;
+            extraValues[extraCount++] = value;
+        }
+    }
+
+    // appends this run to the history file, only the first call does anything
+    public void save() {
+        if (saved) return;
+        saved = true;
+        try (FileWriter writer = new FileWriter(AppUtil.getInstance().getSettingsFile(FILE_NAME), true)) {
+            writer.write(toJson());
+            writer.write('\n');
+        } catch (IOException | RuntimeException e) {
+            RobotLog.ee("MatchRecorder", e, "couldn't save %s", FILE_NAME);
+        }
+    }
+
+    // HELPER METHODS
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public double getFirstLoopMs() {
+        return firstLoopMs;
+    }
+
+    // worst loop period in the first few seconds
+    public double getOpeningWorstMs() {
+        return openingWorstMs;
+    }
+
+    // loop period at this percentile (0 - 100), from the histogram
+    public double percentileMs(double percentile) {
+        if (cycles == 0) return 0;
+        long wanted = (long) Math.ceil(cycles * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BINS; i++) {
+            seen += histogram[i];
+            if (seen >= wanted) {
+                return (i + 1) * BIN_MS;
+            }
+        }
+        return worstMs;
+    }
+
+    private String toJson() {
+        StringBuilder sb = new StringBuilder();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        sb.append('{');
+        field(sb, "time", format.format(new Date(startTime)));
+        field(sb, "version", format.format(new Date(installTime())));
+        field(sb, "opmode", opMode);
+        sb.append(String.format(Locale.US, "\"seconds\":%.1f,", (System.currentTimeMillis() - startTime) / 1000.0));
+        sb.append("\"cycles\":").append(cycles).append(',');
+        sb.append(String.format(Locale.US, "\"loop_ms\":{\"p50\":%.2f,\"p90\":%.2f,\"p99\":%.2f,\"max\":%.1f},",
+                percentileMs(50), percentileMs(90), percentileMs(99), worstMs));
+        sb.append(String.format(Locale.US, "\"first_loop_ms\":%.2f,\"opening_max_ms\":%.1f,", firstLoopMs, openingWorstMs));
+
+        sb.append("\"sections\":{");
+        for (int i = 0; i < sectionCount; i++) {
+            if (i > 0) sb.append(',');
+            double avgMs = cycles == 0 ? 0 : totalNs[i] / 1e6 / cycles;
+            sb.append(String.format(Locale.US, "\"%s\":{\"avg_ms\":%.3f,\"max_ms\":%.2f}", names[i], avgMs, maxNs[i] / 1e6));
+        }
+        sb.append("},");
+
+        long gcCount = runtimeStat("art.gc.gc-count");
+        long gcTime = runtimeStat("art.gc.gc-time");
+        sb.append("\"gc_count\":").append(gcCount < 0 ? -1 : gcCount - gcCountAtStart).append(',');
+        sb.append("\"gc_ms\":").append(gcTime < 0 ? -1 : gcTime - gcTimeAtStart).append(',');
+        sb.append("\"alloc_cycles\":").append(allocs != null && allocs.isEnabled() ? allocs.getTotalAllocCycles() : -1).append(',');
+
+        sb.append("\"battery\":[");
+        for (int i = 0; i < batterySamples; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(String.format(Locale.US, "%.2f", batteryVolts[i]));
+        }
+        sb.append("],");
+
+        sb.append("\"extra\":{");
+        for (int i = 0; i < extraCount; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(String.format(Locale.US, "\"%s\":%.3f", extraKeys[i], extraValues[i]));
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static void field(StringBuilder sb, String key, String value) {
+        sb.append('"').append(key).append("\":\"").append(value.replace("\"", "'")).append("\",");
+    }
+
+    // when this build was installed, good enough to tell code pushes apart
+    private static long installTime() {
+        try {
+            android.content.Context context = AppUtil.getInstance().getApplication();
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (Exception | LinkageError e) {
+            return 0;
+        }
+    }
+
+    // art runtime counters, -1 where they aren't available
+    private static long runtimeStat(String name) {
+        try {
+            return Long.parseLong(android.os.Debug.getRuntimeStat(name));
+        } catch (RuntimeException | LinkageError e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.firstinspires.ftc.teamcode.util;
+
+/**
+ * PoseHistory — a short ring buffer of timestamped odometry poses.
+ *
+ * Camera frames are tens of milliseconds old by the time they are decoded. Looking up
+ * where the robot was when the frame was captured lets a vision measurement be moved
+ * forward to "now" by the odometry change since then. Preallocated, no allocation on
+ * add() or lookup.
+ */
+public class PoseHistory {
+
+    private final long[] timeNanos;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] headings;
+    private int head = 0;   // next slot to write
+    private int count = 0;
+
+    public PoseHistory(int capacity) {
+        timeNanos = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    // call once per loop with the latest odometry pose
+    public void add(long nanos, double x, double y, double heading) {
+        timeNanos[head] = nanos;
+        xs[head] = x;
+        ys[head] = y;
+        headings[head] = heading;
+        head = (head + 1) % timeNanos.length;
+        if (count < timeNanos.length) {
+            count++;
+        }
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // true if the time isn't older than the oldest stored sample, so the lookups below are real
+    public boolean covers(long nanos) {
+        int oldest = count < timeNanos.length ? 0 : head;
+        return count > 0 && timeNanos[oldest] <= nanos;
+    }
+
+    // the stored sample closest to the given time (oldest one if the time is before the buffer)
+    private int indexAt(long nanos) {
+        int newest = (head - 1 + timeNanos.length) % timeNanos.length;
+        int best = newest;
+        for (int i = 0; i < count; i++) {
+            int index = (newest - i + timeNanos.length) % timeNanos.length;
+            best = index;
+            if (timeNanos[index] <= nanos) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    public double xAt(long nanos) {
+        return xs[indexAt(nanos)];
+    }
+
+    public double yAt(long nanos) {
+        return ys[indexAt(nanos)];
+    }
+
+    public double headingAt(long nanos) {
+        return headings[indexAt(nanos)];
+    }
+
+    public double latestX() {
+        return xs[(head - 1 + xs.length) % xs.length];
+    }
+
+    public double latestY() {
+        return ys[(head - 1 + ys.length) % ys.length];
+    }
+
+    public double latestHeading() {
+        return headings[(head - 1 + headings.length) % headings.length];
+    }
+
+    // heading change between then and the newest sample, wrapped to [-pi, pi]
+    public double headingChangeSince(long nanos) {
+        double change = latestHeading() - headingAt(nanos);
+        return Math.atan2(Math.sin(change), Math.cos(change));
+    }
+}
@@ -0,0 +1,33 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * StaticOpMode — registers an OpMode at build time instead of through the sdk's classpath scan.
+ *
+ * Use it in place of @TeleOp / @Autonomous on TeamCode OpModes. The OpModeProcessor module
+ * collects every class carrying it into GeneratedOpModes.register(), which FtcOpModeRegister
+ * calls at startup. The annotation isn't kept at runtime, so the scan has nothing to look at
+ * for these classes. Duplicate names fail the build rather than showing up on the driver
+ * station.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface StaticOpMode {
+
+    enum Type {
+        TELEOP, AUTONOMOUS
+    }
+
+    String name();
+
+    Type type() default Type.TELEOP;
+
+    String group() default "";
+
+    // autonomous only: teleop to preselect on the driver station when this one ends
+    String preselectTeleOp() default "";
+}
@@ -0,0 +1,221 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * TelemetryStream — streams numbers from the loop to a laptop as packed binary frames over tcp.
+ *
+ * Channels are registered by name at init. Each loop sets the values and calls publish(),
+ * which copies them into a ring buffer slot and returns; no formatting, no socket, no
+ * allocation. A background thread accepts one client at a time (tools/telemetry_viewer.py)
+ * and writes every published frame it can. If the client or wifi falls behind, the oldest
+ * frames are dropped and counted, the loop never waits.
+ *
+ * Protocol, little endian:
+ *   header  "FTCS", int32 version, int32 channel count, int32 name bytes, names (utf-8, '\n' separated)
+ *   frame   int32 sequence, int64 nanoTime, float32 * channel count
+ *
+ * Plain java.net, nothing android, so it also runs in a desktop jvm for testing.
+ */
+public class TelemetryStream {
+
+    public static final int DEFAULT_PORT = 5805;
+    private static final int VERSION = 1;
+    private static final int MAX_CHANNELS = 48;
+    // TUNE THESE
+    private static final int RING = 256;          // frames, ~5 s at 50 Hz
+    private static final int IDLE_SLEEP_MS = 5;   // sender sleep when there is nothing new
+
+    private final String[] names = new String[MAX_CHANNELS];
+    private int channelCount = 0;
+    private final float[] values = new float[MAX_CHANNELS];
+
+    // ring: written only by the loop thread, read by the sender
+    private float[][] ring;
+    private final long[] ringTime = new long[RING];
+    private volatile long written = 0;   // frames published so far
+
+    private final int port;
+    private Thread sender;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+    private volatile long sent = 0;
+    private volatile long dropped = 0;
+
+    public TelemetryStream() {
+        this(DEFAULT_PORT);
+    }
+
+    public TelemetryStream(int port) {
+        this.port = port;
+    }
+
+    // register at init, before start()
+    public int channel(String name) {
+        if (ring != null) {
+            throw new IllegalStateException("channels must be added before start()");
+        }
+        if (channelCount == MAX_CHANNELS) {
+            throw new IllegalStateException("too many stream channels");
+        }
+        names[channelCount] = name;
+        return channelCount++;
+    }
+
+    public void start() {
+        if (running) return;
+        ring = new float[RING][channelCount];
+        running = true;
+        sender = new Thread(this::run, "TelemetryStream");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    public void set(int channel, double value) {
+        values[channel] = (float) value;
+    }
+
+    // copy this cycle's values into the ring, the only per-loop cost
+    public void publish() {
+        if (!running) return;
+        long seq = written;
+        int slot = (int) (seq % RING);
+        System.arraycopy(values, 0, ring[slot], 0, channelCount);
+        ringTime[slot] = System.nanoTime();
+        written = seq + 1;   // volatile write publishes the slot to the sender
+    }
+
+    public void stop() {
+        running = false;
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sender = null;
+        }
+    }
+
+    // HELPER METHODS
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private void run() {
+        ServerSocket server = null;
+        try {
+            server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(port));
+            server.setSoTimeout(250); // so stop() is noticed while nobody is connected
+            while (running) {
+                Socket client;
+                try {
+                    client = server.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                serve(client);
+            }
+        } catch (IOException e) {
+            // port taken or network gone, streaming is optional so just stop
+        } finally {
+            running = false;
+            if (server != null) {
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        int frameBytes = 4 + 8 + 4 * channelCount;
+        ByteBuffer batch = ByteBuffer.allocate(frameBytes * RING).order(ByteOrder.LITTLE_ENDIAN);
+        float[] copy = new float[channelCount];
+
+        try (Socket socket = client; OutputStream out = socket.getOutputStream()) {
+            socket.setTcpNoDelay(true);
+            out.write(header());
+            out.flush();
+            connected = true;
+
+            // start from now, a new client doesn't want the backlog
+            long next = written;
+            while (running) {
+                long end = written;
+                if (end == next) {
+                    Thread.sleep(IDLE_SLEEP_MS);
+                    continue;
+                }
+                if (end - next > RING) {
+                    dropped += end - next - RING;
+                    next = end - RING;
+                }
+
+                batch.clear();
+                for (long seq = next; seq < end; seq++) {
+                    int slot = (int) (seq % RING);
+                    System.arraycopy(ring[slot], 0, copy, 0, channelCount);
+                    long time = ringTime[slot];
+                    // the loop may have lapped us while we copied
+                    if (written - seq >= RING) { // at RING the loop is already writing this slot
+                        dropped++;
+                        continue;
+                    }
+                    batch.putInt((int) seq).putLong(time);
+                    for (int c = 0; c < channelCount; c++) {
+                        batch.putFloat(copy[c]);
+                    }
+                    sent++;
+                }
+                out.write(batch.array(), 0, batch.position());
+                out.flush();
+                next = end;
+            }
+        } catch (IOException e) {
+            // client went away, wait for the next one
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connected = false;
+        }
+    }
+
+    private byte[] header() {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < channelCount; i++) {
+            if (i > 0) joined.append('\n');
+            joined.append(names[i]);
+        }
+        byte[] nameBytes = joined.toString().getBytes(Charset.forName("UTF-8"));
+        ByteBuffer header = ByteBuffer.allocate(16 + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'F', 'T', 'C', 'S'}).putInt(VERSION).putInt(channelCount).putInt(nameBytes.length);
+        header.put(nameBytes);
+        return header.array();
+    }
+}
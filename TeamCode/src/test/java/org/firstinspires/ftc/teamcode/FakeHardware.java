@@ -0,0 +1,51 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+
+/**
+ * FakeHardware — a HardwareMapConfig whose devices accept every call and read back zero, so
+ * subsystems can be constructed on the JVM. There is no pinpoint (it is a class, not an
+ * interface), so only the compute paths that don't read it can be run.
+ *
+ * Calls through the fakes allocate (the proxy boxes its arguments), keep them out of any
+ * section an AllocationTracker is measuring.
+ */
+final class FakeHardware {
+
+    private FakeHardware() {
+    }
+
+    static HardwareMapConfig config() {
+        HardwareMapConfig hw = new HardwareMapConfig();
+        hw.wheel_0 = fake(DcMotorEx.class);
+        hw.wheel_1 = fake(DcMotorEx.class);
+        hw.wheel_2 = fake(DcMotorEx.class);
+        hw.wheel_3 = fake(DcMotorEx.class);
+        hw.shooter_motor_0 = fake(DcMotorEx.class);
+        hw.shooter_motor_1 = fake(DcMotorEx.class);
+        hw.feeder_servo = fake(Servo.class);
+        hw.stopper_servo = fake(Servo.class);
+        hw.intake_motor = fake(DcMotorEx.class);
+        hw.battery = fake(VoltageSensor.class);
+        return hw;
+    }
+
+    // every method does nothing and returns 0 / false / null
+    @SuppressWarnings("unchecked")
+    static <T> T fake(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> zero(method.getReturnType()));
+    }
+
+    private static Object zero(Class<?> type) {
+        if (type == void.class || !type.isPrimitive()) {
+            return null;
+        }
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+}
@@ -0,0 +1,151 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.teamcode.control.PIDFController;
+import org.firstinspires.ftc.teamcode.control.TractionControl;
+import org.firstinspires.ftc.teamcode.util.AllocationTracker;
+import org.firstinspires.ftc.teamcode.util.JvmAllocationCounter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * HotPathAllocationTest — the per-loop drive and shooter maths must not allocate.
+ *
+ * Each path first runs the same loop on a lenient tracker so class init and the JIT are out
+ * of the way, then every cycle is a section of a strict tracker: a single allocated byte
+ * fails the run with the section's name, and the test fails if every attempt does.
+ */
+public class HotPathAllocationTest {
+
+    private static final int WARM_CYCLES = 20000;
+    private static final int CYCLES = 5000;
+    private static final int ATTEMPTS = 3;
+
+    private double sink = 0;
+    private Object keep;
+
+    private final double[] command = new double[3];
+    private final double[] powers = new double[4];
+    private final double[] velocities = new double[4];
+    private final PIDFController flywheelController = new PIDFController(0.002, 0.0005, 0, 0)
+            .setDerivativeFilter(0.2).setIntegralLimit(0.15).setOutputLimits(-1, 1);
+
+    // runs n cycles, each one section 0 of the tracker
+    private interface Cycles {
+        void run(AllocationTracker t, int n);
+    }
+
+    @Before
+    public void setUp() {
+        assumeNotNull(JvmAllocationCounter.create()); // not a HotSpot jvm with thread allocation counting
+    }
+
+    @Test
+    public void counterDoesNotAllocate() {
+        assertNoAllocation("empty", this::emptyCycles);
+    }
+
+    @Test
+    public void allocatingSectionFails() {
+        AllocationTracker tracker = strictTracker("allocating");
+        tracker.begin(0);
+        keep = new double[16];
+        tracker.end(0);
+        IllegalStateException thrown = null;
+        try {
+            tracker.endCycle();
+        } catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotEquals(null, thrown);
+    }
+
+    @Test
+    public void driveComputeDoesNotAllocate() {
+        Drivetrain drivetrain = new Drivetrain(FakeHardware.config());
+        assertNoAllocation("drive compute", (t, n) -> driveCycles(drivetrain, t, n));
+    }
+
+    @Test
+    public void shooterComputeDoesNotAllocate() {
+        Shooter shooter = new Shooter(FakeHardware.config());
+        assertNoAllocation("shooter compute", (t, n) -> shooterCycles(shooter, t, n));
+    }
+
+    // HELPER METHODS
+
+    // the same loop on a lenient tracker first, so class init and jit compiles happen there.
+    // A hot path that allocates does it every cycle (or every few), a one-off from the jit
+    // recompiling mid-run doesn't repeat, so each strict attempt is a fresh run of CYCLES
+    private void assertNoAllocation(String name, Cycles cycles) {
+        AllocationTracker warm = new AllocationTracker(JvmAllocationCounter.create());
+        warm.section("warm up");
+        cycles.run(warm, WARM_CYCLES);
+
+        IllegalStateException last = null;
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            AllocationTracker tracker = strictTracker(name);
+            try {
+                cycles.run(tracker, CYCLES);
+                assertEquals(0, tracker.getAllocCycles(0));
+                return;
+            } catch (IllegalStateException e) {
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    private AllocationTracker strictTracker(String name) {
+        AllocationTracker tracker = new AllocationTracker(JvmAllocationCounter.create());
+        tracker.section(name);
+        tracker.setStrict(true);
+        return tracker;
+    }
+
+    private void emptyCycles(AllocationTracker t, int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            t.begin(0);
+            t.end(0);
+            t.endCycle();
+        }
+    }
+
+    // Drivetrain.warmUp() without the planner, section 0 of the tracker
+    private void driveCycles(Drivetrain drivetrain, AllocationTracker t, int cycles) {
+        TractionControl traction = drivetrain.getTraction();
+        for (int i = 0; i < cycles; i++) {
+            double time = i * 0.01;
+            double a = Math.sin(time), b = Math.cos(time);
+            t.begin(0);
+            drivetrain.computeTargetCommand(a * 300, b * 300, a, 500, 200, 0, command);
+            drivetrain.computeWheelPowers(command[0] + a, command[1] + b, command[2], powers);
+            for (int w = 0; w < 4; w++) {
+                velocities[w] = powers[w] * 2000;
+            }
+            traction.apply(powers, velocities, a * 800, b * 800, a);
+            t.end(0);
+            t.endCycle();
+            sink += powers[0];
+        }
+    }
+
+    // Shooter.warmUp() on a spare controller, section 0 of the tracker
+    private void shooterCycles(Shooter shooter, AllocationTracker t, int cycles) {
+        ShotTable table = shooter.getShotTable();
+        double low = table.distanceAt(0);
+        double range = Math.max(1, table.distanceAt(table.size() - 1) - low);
+        for (int i = 0; i < cycles; i++) {
+            double distance = low + (i % 100) / 100.0 * range;
+            t.begin(0);
+            double velocity = table.velocityFor(distance);
+            sink += table.feedMsFor(distance);
+            sink += shooter.computeFlywheelPower(velocity, velocity * 0.9, flywheelController);
+            t.end(0);
+            t.endCycle();
+        }
+    }
+}
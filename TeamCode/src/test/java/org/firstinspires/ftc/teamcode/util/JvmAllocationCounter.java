@@ -0,0 +1,67 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * JvmAllocationCounter — bytes allocated by the current thread, from HotSpot's ThreadMXBean.
+ *
+ * The test sources compile against android.jar, which has no java.lang.management, so the
+ * bean is looked up by name. Method.invoke would box the result and allocate an argument
+ * array on every read, so the call goes through an exact MethodHandle instead: (Object) -> long,
+ * nothing boxed, and getCurrentThreadAllocatedBytes() takes no arguments at all. The handle
+ * is a static final constant; a handle in a field gets its lambda forms customised after
+ * enough calls, and that allocates in the calling thread, i.e. inside a measured section.
+ */
+public class JvmAllocationCounter implements AllocationTracker.Counter {
+
+    private static final Object BEAN;
+    private static final MethodHandle ALLOCATED_BYTES;
+
+    static {
+        Object bean = null;
+        MethodHandle handle = null;
+        try {
+            Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+            Object candidate = factory.getMethod("getThreadMXBean").invoke(null);
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(candidate)) {
+                handle = MethodHandles.publicLookup()
+                        .findVirtual(beanClass, "getCurrentThreadAllocatedBytes", MethodType.methodType(long.class))
+                        .asType(MethodType.methodType(long.class, Object.class));
+                bean = candidate;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            handle = null;
+        }
+        BEAN = bean;
+        ALLOCATED_BYTES = handle;
+    }
+
+    private JvmAllocationCounter() {
+    }
+
+    // null on a vm without the counter (needs JDK 14+ and HotSpot), tests skip then
+    public static JvmAllocationCounter create() {
+        if (ALLOCATED_BYTES == null) {
+            return null;
+        }
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        return counter.read() > 0 ? counter : null; // -1 = switched off in this vm
+    }
+
+    @Override
+    public long read() {
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(BEAN);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Override
+    public String unit() {
+        return "bytes";
+    }
+}
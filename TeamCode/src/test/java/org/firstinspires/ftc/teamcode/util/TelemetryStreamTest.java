@@ -0,0 +1,128 @@
+package org.firstinspires.ftc.teamcode.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TelemetryStreamTest — a socket client on localhost reads the header and the published frames,
+ * the same way tools/telemetry_viewer.py does.
+ */
+public class TelemetryStreamTest {
+
+    private static final int TIMEOUT_MS = 2000;
+    private static final int FRAMES = 10;
+
+    private TelemetryStream stream;
+    private Socket client;
+
+    @After
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (stream != null) {
+            stream.stop();
+        }
+    }
+
+    @Test
+    public void clientGetsHeaderAndFrames() throws Exception {
+        stream = new TelemetryStream(freePort());
+        int speed = stream.channel("speed");
+        int power = stream.channel("power");
+        stream.start();
+
+        DataInputStream in = connect(stream.getPort());
+
+        // header: "FTCS", version, channel count, name bytes, names
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertArrayEquals(new byte[] {'F', 'T', 'C', 'S'}, magic);
+        ByteBuffer header = read(in, 12);
+        assertEquals(1, header.getInt());
+        assertEquals(2, header.getInt());
+        byte[] names = new byte[header.getInt()];
+        in.readFully(names);
+        assertEquals("speed\npower", new String(names, Charset.forName("UTF-8")));
+
+        // the sender starts at whatever was published when it connected, so publish only once it has
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!stream.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("never connected", stream.isConnected());
+
+        long before = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            stream.set(speed, i * 100);
+            stream.set(power, -i / 10.0);
+            stream.publish();
+        }
+
+        // frame: sequence, nanoTime, one float per channel; the first one may have gone by
+        // before the sender took its starting point, after that none are missing
+        int expected = -1;
+        long lastTime = before;
+        while (expected < FRAMES - 1) {
+            ByteBuffer frame = read(in, 4 + 8 + 4 * 2);
+            int seq = frame.getInt();
+            if (expected >= 0) {
+                assertEquals(expected + 1, seq);
+            }
+            expected = seq;
+            long time = frame.getLong();
+            assertTrue(time >= lastTime);
+            lastTime = time;
+            assertEquals(seq * 100, frame.getFloat(), 0);
+            assertEquals(-seq / 10.0, frame.getFloat(), 1e-6);
+        }
+        assertEquals(0, stream.getDropped());
+    }
+
+    // HELPER METHODS
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    // the server socket is bound on the sender thread, retry until it is listening
+    private DataInputStream connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            try {
+                client = new Socket();
+                client.connect(new InetSocketAddress("127.0.0.1", port), TIMEOUT_MS);
+                client.setSoTimeout(TIMEOUT_MS);
+                return new DataInputStream(client.getInputStream());
+            } catch (IOException e) {
+                client.close();
+                client = null;
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static ByteBuffer read(DataInputStream in, int bytes) throws IOException {
+        byte[] data = new byte[bytes];
+        in.readFully(data);
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
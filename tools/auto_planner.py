@@ -0,0 +1,173 @@
+#!/usr/bin/env python3
+"""
+auto_planner.py - search orderings of candidate autonomous actions for the best score in 30 s.
+
+Each action has a measured (or simulated) duration, a point value, the mechanisms it
+ties up and the actions that must finish first. Actions are list-scheduled in the
+order being tried: each one starts as soon as its dependencies are done and all of
+its mechanisms are free. Only actions that finish inside the time limit score.
+
+Auto runs the steps one after another, only spinup / intake_* carry on in the
+background. So any action with a blocking step (drive, shoot, wait) also uses "drive",
+which stands for Auto's step sequence, whatever "uses" says: a volley never overlaps
+a drive leg. A background-only action can run alongside the blocking actions after
+it, but it can't start before Auto has finished the blocking actions before it.
+
+Branch and bound over all orderings (including leaving actions out), pruned by an
+optimistic bound. Fine for the dozen or so candidates an auto realistically has.
+
+actions.json:
+{
+  "time_limit": 30,
+  "actions": [
+    {"name": "back_off", "duration": 1.2, "points": 0, "uses": ["drive"], "steps": ["drive,-500,0"]},
+    {"name": "spin_up",  "duration": 1.5, "points": 0, "uses": ["shooter"], "steps": ["spinup"]},
+    {"name": "volley",   "duration": 2.0, "points": 9, "uses": ["shooter"],
+     "after": ["back_off", "spin_up"], "steps": ["shoot"]},
+    {"name": "leave",    "duration": 1.0, "points": 3, "uses": ["drive"], "steps": ["drive,0,-300"]}
+  ]
+}
+
+Robot steps (what Auto runs, one per line in auto_plan.txt):
+    drive,<y mm>,<x mm>            move relative to the robot, y forward, x right, like Auto.moveDistance (blocks)
+    shoot                          full volley, blocks
+    spinup                         flywheels to shooting speed, runs in the background
+    intake_on / intake_off         background
+    wait,<ms>                      blocks
+
+usage:
+    python3 tools/auto_planner.py actions.json -o auto_plan.txt
+    adb push auto_plan.txt /sdcard/FIRST/settings/auto_plan.txt
+"""
+
+import argparse
+import json
+import sys
+
+# robot steps that don't block the next step
+BACKGROUND_STEPS = ("spinup", "intake_on", "intake_off")
+# Auto's step sequence, every blocking action holds it
+SEQUENCE = "drive"
+
+
+def is_blocking(action):
+    return any(step.split(",")[0] not in BACKGROUND_STEPS for step in action["steps"])
+
+
+def schedule(order, actions):
+    """start / end time of each action when run in this order"""
+    free = {}
+    ends = {}
+    times = []
+    for i in order:
+        a = actions[i]
+        start = max([ends[d] for d in a["after"]] + [free.get(m, 0.0) for m in a["uses"]] + [0.0])
+        # a background step is only reached once the blocking steps before it are done
+        start = max(start, free.get(SEQUENCE, 0.0))
+        end = start + a["duration"]
+        for m in a["uses"]:
+            free[m] = end
+        ends[a["name"]] = end
+        times.append((i, start, end))
+    return times
+
+
+def search(actions, time_limit):
+    names = {a["name"]: i for i, a in enumerate(actions)}
+    for a in actions:
+        for d in a["after"]:
+            if d not in names:
+                raise SystemExit("%s depends on unknown action %s" % (a["name"], d))
+
+    best = {"score": -1, "end": float("inf"), "order": []}
+    total_points = sum(a["points"] for a in actions)
+
+    def score_of(times):
+        return sum(actions[i]["points"] for i, _, end in times if end <= time_limit + 1e-9)
+
+    def visit(order, done, times):
+        score = score_of(times)
+        end = max([e for _, _, e in times] or [0.0])
+        if score > best["score"] or (score == best["score"] and end < best["end"]):
+            best.update(score=score, end=end, order=list(order))
+
+        # optimistic: everything not yet placed still scores. Equal is kept, the same
+        # score finishing earlier is still better
+        remaining = total_points - sum(actions[i]["points"] for i in order)
+        if score + remaining < best["score"]:
+            return
+
+        for i, a in enumerate(actions):
+            if i in done or any(d not in {actions[j]["name"] for j in done} for d in a["after"]):
+                continue
+            order.append(i)
+            done.add(i)
+            new_times = schedule(order, actions)
+            # anything finishing after the buzzer is wasted, don't build on it
+            if new_times[-1][2] <= time_limit + 1e-9:
+                visit(order, done, new_times)
+            order.pop()
+            done.discard(i)
+
+    visit([], set(), [])
+    return best
+
+
+def emit_plan(order, actions, time_limit):
+    """robot steps in start order; steps of overlapping background actions come first"""
+    times = sorted(schedule(order, actions), key=lambda t: (t[1], "drive" in actions[t[0]]["uses"]))
+    lines = []
+    for i, start, end in times:
+        a = actions[i]
+        if end > time_limit + 1e-9:
+            continue
+        lines.append("# %s  %.2f-%.2f s  %d pts" % (a["name"], start, end, a["points"]))
+        lines.extend(a["steps"])
+    return lines
+
+
+def check_steps(actions):
+    for a in actions:
+        for step in a["steps"]:
+            kind = step.split(",")[0]
+            if kind not in ("drive", "shoot", "wait") + BACKGROUND_STEPS:
+                raise SystemExit("%s: unknown robot step '%s'" % (a["name"], step))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("actions", help="candidate actions json")
+    parser.add_argument("-o", "--output", help="write the robot plan here (default: print it)")
+    args = parser.parse_args()
+
+    with open(args.actions) as f:
+        spec = json.load(f)
+    time_limit = float(spec.get("time_limit", 30))
+    actions = spec["actions"]
+    for a in actions:
+        a.setdefault("after", [])
+        a.setdefault("uses", ["drive"])
+        a.setdefault("points", 0)
+        a.setdefault("steps", [])
+    check_steps(actions)
+    for a in actions:
+        if is_blocking(a) and SEQUENCE not in a["uses"]:
+            a["uses"] = a["uses"] + [SEQUENCE]
+
+    best = search(actions, time_limit)
+    print("best: %d points, done at %.2f s of %.0f" % (best["score"], best["end"], time_limit), file=sys.stderr)
+    for i, start, end in schedule(best["order"], actions):
+        print("  %5.2f - %5.2f  %s" % (start, end, actions[i]["name"]), file=sys.stderr)
+
+    lines = ["# generated by tools/auto_planner.py from %s, %d points" % (args.actions, best["score"])]
+    lines += emit_plan(best["order"], actions, time_limit)
+    text = "\n".join(lines) + "\n"
+    if args.output:
+        with open(args.output, "w") as f:
+            f.write(text)
+    else:
+        sys.stdout.write(text)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,174 @@
+#!/usr/bin/env python3
+"""
+field_grid_builder.py - builds field_grid.bin, the occupancy grid + distance transform and the
+named shooting poses that Drivetrain's B button plans over (control/FieldGrid, PathPlanner).
+
+Field elements are polygons or circles in the field frame (mm, origin in the middle, same
+frame as the pinpoint once vision has set it). Every cell gets the exact distance from its
+centre to the nearest element or wall, so the robot never computes any of it.
+
+layout.json (everything optional, the built in layout is used for what's missing):
+{
+  "field_mm": 3658,
+  "cell_mm": 50,
+  "goal": [1500, 1500],
+  "obstacles": [
+    {"name": "blue goal", "polygon": [[-1829, 1829], [-1829, 1150], [-1150, 1829]]},
+    {"name": "post", "circle": [0, 0, 100]}
+  ],
+  "poses": [
+    {"name": "near", "x": 600, "y": 600},                  # heading faces "goal" when left out
+    {"name": "far", "x": 0, "y": -1300, "heading": 0.4}    # radians, 0 = facing +y
+  ]
+}
+
+usage:
+    python3 tools/field_grid_builder.py                          # built in layout
+    python3 tools/field_grid_builder.py --layout layout.json --show
+    adb push field_grid.bin /sdcard/FIRST/settings/field_grid.bin
+
+No dependencies. Measure the real field elements before trusting the built in layout.
+"""
+
+import argparse
+import json
+import math
+import struct
+
+MAGIC = b"FGRD"
+VERSION = 1
+ROBOT_RADIUS_MM = 260  # keep in step with PathPlanner.ROBOT_RADIUS_MM, only used for --show
+
+# CHANGE THESE once the field elements have been measured
+DEFAULT_LAYOUT = {
+    "field_mm": 3658,
+    "cell_mm": 50,
+    "goal": [1500, 1500],
+    "obstacles": [
+        {"name": "blue goal", "polygon": [[-1829, 1829], [-1829, 1150], [-1150, 1829]]},
+        {"name": "red goal", "polygon": [[1829, 1829], [1829, 1150], [1150, 1829]]},
+        {"name": "blue ramp", "polygon": [[-1829, 1150], [-1829, -300], [-1680, -300], [-1680, 1150]]},
+        {"name": "red ramp", "polygon": [[1829, 1150], [1829, -300], [1680, -300], [1680, 1150]]},
+    ],
+    "poses": [
+        {"name": "near", "x": 500, "y": 200},
+        {"name": "centre", "x": 0, "y": 600},
+        {"name": "far", "x": 0, "y": -1300},
+    ],
+}
+
+
+def point_segment_distance(px, py, ax, ay, bx, by):
+    dx, dy = bx - ax, by - ay
+    length2 = dx * dx + dy * dy
+    t = 0.0 if length2 == 0 else max(0.0, min(1.0, ((px - ax) * dx + (py - ay) * dy) / length2))
+    return math.hypot(px - ax - t * dx, py - ay - t * dy)
+
+
+def inside_polygon(px, py, polygon):
+    inside = False
+    j = len(polygon) - 1
+    for i in range(len(polygon)):
+        xi, yi = polygon[i]
+        xj, yj = polygon[j]
+        if (yi > py) != (yj > py) and px < (xj - xi) * (py - yi) / (yj - yi) + xi:
+            inside = not inside
+        j = i
+    return inside
+
+
+def obstacle_distance(px, py, obstacle):
+    """0 inside, otherwise the distance to the element's edge."""
+    if "circle" in obstacle:
+        cx, cy, r = obstacle["circle"]
+        return max(0.0, math.hypot(px - cx, py - cy) - r)
+    polygon = obstacle["polygon"]
+    if inside_polygon(px, py, polygon):
+        return 0.0
+    return min(point_segment_distance(px, py, *polygon[i - 1], *polygon[i]) for i in range(len(polygon)))
+
+
+def face(x, y, goal):
+    # repo convention: heading 0 faces +y, forward at heading h is (-sin h, cos h)
+    return math.atan2(-(goal[0] - x), goal[1] - y)
+
+
+def build(layout):
+    half = layout["field_mm"] / 2.0
+    cell = float(layout["cell_mm"])
+    cols = rows = int(math.ceil(layout["field_mm"] / cell))
+    origin = -cols * cell / 2.0  # centred, the part cell at each edge hangs over the wall equally
+
+    occupied = bytearray(cols * rows)
+    clearance = [0] * (cols * rows)
+    for row in range(rows):
+        y = origin + (row + 0.5) * cell
+        for col in range(cols):
+            x = origin + (col + 0.5) * cell
+            distance = min(x + half, half - x, y + half, half - y)
+            for obstacle in layout["obstacles"]:
+                distance = min(distance, obstacle_distance(x, y, obstacle))
+                if distance == 0:
+                    break
+            i = row * cols + col
+            occupied[i] = 1 if distance <= 0 else 0
+            clearance[i] = max(0, min(65535, int(distance)))
+
+    poses = []
+    for pose in layout["poses"]:
+        heading = pose["heading"] if "heading" in pose else face(pose["x"], pose["y"], layout["goal"])
+        poses.append((pose["name"], float(pose["x"]), float(pose["y"]), float(heading)))
+    return cols, rows, cell, origin, occupied, clearance, poses
+
+
+def write(path, cols, rows, cell, origin, occupied, clearance, poses):
+    with open(path, "wb") as f:
+        f.write(MAGIC)
+        f.write(struct.pack("<iiifff", VERSION, cols, rows, cell, origin, origin))
+        f.write(bytes(occupied))
+        f.write(struct.pack("<%dH" % len(clearance), *clearance))
+        f.write(struct.pack("<i", len(poses)))
+        for name, x, y, heading in poses:
+            encoded = name.encode("utf-8")[:255]
+            f.write(struct.pack("<B", len(encoded)) + encoded)
+            f.write(struct.pack("<fff", x, y, heading))
+
+
+def show(cols, rows, cell, origin, clearance, poses):
+    """# element, + too close for the robot, letters are poses, +y at the top."""
+    marks = {}
+    for name, x, y, _ in poses:
+        marks[(int((x - origin) // cell), int((y - origin) // cell))] = name[0].upper()
+    for row in reversed(range(rows)):
+        line = []
+        for col in range(cols):
+            c = clearance[row * cols + col]
+            line.append(marks.get((col, row)) or ("#" if c == 0 else "+" if c < ROBOT_RADIUS_MM else "."))
+        print("".join(line))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--layout", help="layout json, see above")
+    parser.add_argument("--out", default="field_grid.bin")
+    parser.add_argument("--show", action="store_true", help="print the grid as text")
+    args = parser.parse_args()
+
+    layout = dict(DEFAULT_LAYOUT)
+    if args.layout:
+        with open(args.layout) as f:
+            layout.update(json.load(f))
+
+    cols, rows, cell, origin, occupied, clearance, poses = build(layout)
+    write(args.out, cols, rows, cell, origin, occupied, clearance, poses)
+    if args.show:
+        show(cols, rows, cell, origin, clearance, poses)
+    blocked = sum(1 for c in clearance if c < ROBOT_RADIUS_MM)
+    print("wrote %s: %dx%d cells of %.0f mm, %d poses, %d%% of cells too tight for the robot" % (
+        args.out, cols, rows, cell, len(poses), 100 * blocked // len(clearance)))
+    for name, x, y, heading in poses:
+        print("  %-10s %7.0f %7.0f  %5.2f rad" % (name, x, y, heading))
+
+
+if __name__ == "__main__":
+    main()
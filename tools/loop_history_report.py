@@ -0,0 +1,186 @@
+#!/usr/bin/env python3
+"""
+loop_history_report.py - trend report over the loop stats every Teleop / Auto run appends to
+match_history.jsonl (MatchRecorder), so a slower loop shows up between code pushes at an event.
+
+Runs are grouped by "version", the time the app was installed on the Control Hub. The latest
+version is compared against the one before it, and anything that got worse by more than
+--threshold percent is flagged.
+
+usage:
+    adb pull /sdcard/FIRST/settings/match_history.jsonl
+    python3 tools/loop_history_report.py match_history.jsonl
+    python3 tools/loop_history_report.py match_history.jsonl --opmode teleop --plot trends.png
+"""
+
+import argparse
+import json
+import statistics
+import sys
+from collections import OrderedDict
+
+# (label, how to get it from a run, higher is worse)
+METRICS = [
+    ("loop p50 ms", lambda r: r["loop_ms"]["p50"], True),
+    ("loop p90 ms", lambda r: r["loop_ms"]["p90"], True),
+    ("loop p99 ms", lambda r: r["loop_ms"]["p99"], True),
+    ("loop max ms", lambda r: r["loop_ms"]["max"], True),
+    ("first loop ms", lambda r: r.get("first_loop_ms"), True),
+    ("opening max ms", lambda r: r.get("opening_max_ms"), True),
+    ("gc count", lambda r: r["gc_count"] if r["gc_count"] >= 0 else None, True),
+    ("gc ms", lambda r: r["gc_ms"] if r["gc_ms"] >= 0 else None, True),
+    ("overruns", lambda r: r["extra"].get("loop_overruns"), True),
+    ("telemetry skipped", lambda r: r["extra"].get("telemetry_skipped"), True),
+    ("battery sag V", lambda r: r["battery"][0] - min(r["battery"]) if r["battery"] else None, True),
+    ("vision fps driving", lambda r: r["extra"].get("vision_fps_driving"), False),
+]
+
+
+def load(path, opmode):
+    runs = []
+    with open(path) as f:
+        for number, line in enumerate(f, 1):
+            line = line.strip()
+            if not line:
+                continue
+            try:
+                run = json.loads(line)
+            except ValueError:
+                print("skipping bad line %d" % number, file=sys.stderr)
+                continue
+            if opmode and run.get("opmode") != opmode:
+                continue
+            # very short runs are init-and-stop, not matches
+            if run.get("cycles", 0) < 50:
+                continue
+            runs.append(run)
+    return runs
+
+
+def by_version(runs):
+    versions = OrderedDict()
+    for run in sorted(runs, key=lambda r: (r["version"], r["time"])):
+        versions.setdefault(run["version"], []).append(run)
+    return versions
+
+
+def metric_values(runs, get):
+    values = []
+    for run in runs:
+        try:
+            value = get(run)
+        except (KeyError, TypeError):
+            value = None
+        if value is not None:
+            values.append(value)
+    return values
+
+
+def print_runs(runs):
+    print("%-19s  %-7s  %7s  %6s  %6s  %6s  %7s  %5s" % ("time", "opmode", "cycles", "p50", "p90", "p99", "max", "gc"))
+    for r in sorted(runs, key=lambda r: r["time"]):
+        print("%-19s  %-7s  %7d  %6.2f  %6.2f  %6.2f  %7.1f  %5d" % (
+            r["time"], r["opmode"], r["cycles"], r["loop_ms"]["p50"], r["loop_ms"]["p90"],
+            r["loop_ms"]["p99"], r["loop_ms"]["max"], r["gc_count"]))
+
+
+def print_sections(versions):
+    names = []
+    for runs in versions.values():
+        for run in runs:
+            for name in run.get("sections", {}):
+                if name not in names:
+                    names.append(name)
+    if not names:
+        return
+    print("\nmean section time (ms per loop) by version")
+    print("%-19s  " % "version" + "  ".join("%12s" % n[:12] for n in names))
+    for version, runs in versions.items():
+        cells = []
+        for name in names:
+            values = [r["sections"][name]["avg_ms"] for r in runs if name in r.get("sections", {})]
+            cells.append("%12.3f" % statistics.mean(values) if values else "%12s" % "-")
+        print("%-19s  " % version + "  ".join(cells))
+
+
+def compare(versions, threshold):
+    keys = list(versions)
+    if len(keys) < 2:
+        print("\nonly one version so far, nothing to compare")
+        return 0
+    old, new = versions[keys[-2]], versions[keys[-1]]
+    print("\n%s (%d runs) vs %s (%d runs)" % (keys[-1], len(new), keys[-2], len(old)))
+    regressions = 0
+    for label, get, higher_is_worse in METRICS:
+        before, after = metric_values(old, get), metric_values(new, get)
+        if not before or not after:
+            continue
+        b, a = statistics.median(before), statistics.median(after)
+        change = (a - b) / b * 100 if b else 0.0
+        worse = change > threshold if higher_is_worse else change < -threshold
+        regressions += worse
+        print("  %-20s %9.2f -> %9.2f  %+6.1f%%%s" % (label, b, a, change, "  <-- WORSE" if worse else ""))
+    return regressions
+
+
+def plot(versions, path):
+    try:
+        import matplotlib
+        matplotlib.use("Agg")
+        import matplotlib.pyplot as plt
+    except ImportError:
+        raise SystemExit("pip install matplotlib for --plot")
+
+    runs = [r for v in versions.values() for r in v]
+    runs.sort(key=lambda r: r["time"])
+    x = range(len(runs))
+    fig, (loop_ax, batt_ax) = plt.subplots(2, 1, figsize=(11, 7))
+
+    for pct in ("p50", "p90", "p99"):
+        loop_ax.plot(x, [r["loop_ms"][pct] for r in runs], marker="o", label=pct)
+    # vertical line at every code push
+    for i in range(1, len(runs)):
+        if runs[i]["version"] != runs[i - 1]["version"]:
+            loop_ax.axvline(i - 0.5, color="grey", linestyle="--")
+            batt_ax.axvline(i - 0.5, color="grey", linestyle="--")
+    loop_ax.set_ylabel("loop ms")
+    loop_ax.legend()
+    loop_ax.set_title("loop time per run (dashed line = new code)")
+
+    batt_ax.plot(x, [r["battery"][0] if r["battery"] else None for r in runs], marker="o", label="start")
+    batt_ax.plot(x, [min(r["battery"]) if r["battery"] else None for r in runs], marker="o", label="lowest")
+    batt_ax.set_ylabel("battery V")
+    batt_ax.set_xticks(list(x))
+    batt_ax.set_xticklabels([r["time"][5:16] for r in runs], rotation=60, fontsize=7)
+    batt_ax.legend()
+
+    fig.tight_layout()
+    fig.savefig(path)
+    print("\nwrote " + path)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("history", help="match_history.jsonl pulled off the Control Hub")
+    parser.add_argument("--opmode", help="only this opmode, e.g. teleop or auto")
+    parser.add_argument("--threshold", type=float, default=10, help="percent change that counts as a regression")
+    parser.add_argument("--plot", help="also save a trend chart here (needs matplotlib)")
+    args = parser.parse_args()
+
+    runs = load(args.history, args.opmode)
+    if not runs:
+        raise SystemExit("no runs in " + args.history)
+
+    versions = by_version(runs)
+    print_runs(runs)
+    print_sections(versions)
+    regressions = compare(versions, args.threshold)
+    if args.plot:
+        plot(versions, args.plot)
+
+    # non-zero exit so a script can stop a deploy
+    sys.exit(1 if regressions else 0)
+
+
+if __name__ == "__main__":
+    main()
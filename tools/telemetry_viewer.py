@@ -0,0 +1,258 @@
+#!/usr/bin/env python3
+"""
+telemetry_viewer.py - live plots from the binary stream Teleop sends when STREAM_TELEMETRY is on
+(util/TelemetryStream), with the robot drawn on the field.
+
+Connect the laptop to the robot's wifi, then:
+    python3 tools/telemetry_viewer.py                          # 192.168.43.1:5805, plots + field
+    python3 tools/telemetry_viewer.py --plot flywheel_0,flywheel_1,flywheel_target
+    python3 tools/telemetry_viewer.py --field field.png        # field image under the robot
+    python3 tools/telemetry_viewer.py --print                  # text only, no matplotlib needed
+    python3 tools/telemetry_viewer.py --record tuning.csv      # every frame to a csv as well
+
+Testing without a robot:
+    python3 tools/telemetry_viewer.py --serve-fake &           # fake robot on localhost
+    python3 tools/telemetry_viewer.py --host localhost --print
+
+Plots need matplotlib (pip install matplotlib).
+"""
+
+import argparse
+import csv
+import math
+import socket
+import struct
+import sys
+import threading
+import time
+from collections import deque
+
+MAGIC = b"FTCS"
+VERSION = 1
+PORT = 5805
+FIELD_MM = 3658  # 12 ft square, pinpoint origin in the middle
+ROBOT_MM = 450
+DEFAULT_PLOT = "loop_ms;power_ne,power_se,power_sw,power_nw;flywheel_0,flywheel_1,flywheel_target"
+
+
+def read_exact(sock, n):
+    data = bytearray()
+    while len(data) < n:
+        chunk = sock.recv(n - len(data))
+        if not chunk:
+            raise ConnectionError("robot closed the stream")
+        data += chunk
+    return bytes(data)
+
+
+class Stream:
+    """Reads the header then yields (seq, seconds, values) per frame."""
+
+    def __init__(self, host, port):
+        self.sock = socket.create_connection((host, port), timeout=5)
+        self.sock.settimeout(None)
+        magic, version, count, name_bytes = struct.unpack("<4siii", read_exact(self.sock, 16))
+        if magic != MAGIC:
+            raise SystemExit("not a telemetry stream (got %r)" % magic)
+        if version != VERSION:
+            raise SystemExit("stream version %d, this viewer reads %d" % (version, VERSION))
+        names = read_exact(self.sock, name_bytes).decode("utf-8")
+        self.names = names.split("\n") if count else []
+        self.frame = struct.Struct("<iq%df" % count)
+        self.lost = 0
+        self._last_seq = None
+
+    def frames(self):
+        while True:
+            seq, nanos, *values = self.frame.unpack(read_exact(self.sock, self.frame.size))
+            # gaps in the sequence are frames the robot dropped because we fell behind
+            if self._last_seq is not None and seq != self._last_seq + 1:
+                self.lost += seq - self._last_seq - 1
+            self._last_seq = seq
+            yield seq, nanos / 1e9, values
+
+
+def print_frames(stream, writer, every):
+    print("channels: " + ", ".join(stream.names))
+    last = 0.0
+    for seq, t, values in stream.frames():
+        if writer:
+            writer.writerow([seq, "%.6f" % t] + ["%.6g" % v for v in values])
+        now = time.time()
+        if now - last >= every:
+            last = now
+            cells = ("%s=%.3g" % (n, v) for n, v in zip(stream.names, values))
+            print("#%-7d lost %-4d %s" % (seq, stream.lost, "  ".join(cells)))
+
+
+def plot_frames(stream, writer, groups, field_image, history_s):
+    try:
+        import matplotlib.pyplot as plt
+        from matplotlib.animation import FuncAnimation
+    except ImportError:
+        raise SystemExit("pip install matplotlib, or use --print")
+
+    index = {n: i for i, n in enumerate(stream.names)}
+    groups = [[n for n in g if n in index] for g in groups]
+    groups = [g for g in groups if g]
+    has_pose = all(n in index for n in ("x", "y", "heading"))
+
+    # the socket is read on its own thread so the plot never makes the robot buffer up
+    keep = 5000
+    times = deque(maxlen=keep)
+    columns = [deque(maxlen=keep) for _ in stream.names]
+    lock = threading.Lock()
+
+    def reader():
+        try:
+            for seq, t, values in stream.frames():
+                if writer:
+                    writer.writerow([seq, "%.6f" % t] + ["%.6g" % v for v in values])
+                with lock:
+                    times.append(t)
+                    for column, v in zip(columns, values):
+                        column.append(v)
+        except ConnectionError as e:
+            print(e, file=sys.stderr)
+
+    threading.Thread(target=reader, daemon=True).start()
+
+    rows = max(1, len(groups))
+    fig = plt.figure(figsize=(13, 7))
+    plot_axes = [fig.add_subplot(rows, 2 if has_pose else 1, i * (2 if has_pose else 1) + 1) for i in range(rows)]
+    lines = []
+    for ax, group in zip(plot_axes, groups):
+        ax_lines = [ax.plot([], [], label=n)[0] for n in group]
+        ax.legend(loc="upper left", fontsize=8)
+        ax.grid(True, alpha=0.3)
+        lines.append(ax_lines)
+
+    if has_pose:
+        field = fig.add_subplot(1, 2, 2)
+        half = FIELD_MM / 2
+        if field_image:
+            field.imshow(plt.imread(field_image), extent=(-half, half, -half, half))
+        field.set_xlim(-half, half)
+        field.set_ylim(-half, half)
+        field.set_aspect("equal")
+        trail, = field.plot([], [], color="tab:blue", alpha=0.5)
+        robot, = field.plot([], [], color="tab:blue", linewidth=2)
+        target, = field.plot([], [], "x", color="tab:red", markersize=12)
+    title = fig.suptitle("")
+
+    def outline(x, y, heading):
+        # square footprint plus a line to the front, pinpoint x is strafe and y is forward at heading 0
+        h = ROBOT_MM / 2
+        corners = [(-h, -h), (h, -h), (h, h), (-h, h), (-h, -h), (0, 0), (0, h)]
+        c, s = math.cos(heading), math.sin(heading)
+        xs = [x + px * c - py * s for px, py in corners]
+        ys = [y + px * s + py * c for px, py in corners]
+        return xs, ys
+
+    def update(_):
+        with lock:
+            if not times:
+                return []
+            t = list(times)
+            cols = [list(c) for c in columns]
+        start = t[-1] - history_s
+        first = next(i for i, v in enumerate(t) if v >= start)
+        t0 = t[-1]
+        xs = [v - t0 for v in t[first:]]
+        for ax, group, ax_lines in zip(plot_axes, groups, lines):
+            for line, name in zip(ax_lines, group):
+                line.set_data(xs, cols[index[name]][first:])
+            ax.relim()
+            ax.autoscale_view()
+        if has_pose:
+            x, y, heading = cols[index["x"]], cols[index["y"]], cols[index["heading"]]
+            trail.set_data(x[first:], y[first:])
+            robot.set_data(*outline(x[-1], y[-1], heading[-1]))
+            if "target_x" in index and "target_y" in index:
+                target.set_data([cols[index["target_x"]][-1]], [cols[index["target_y"]][-1]])
+        title.set_text("%d frames, %d lost" % (len(t), stream.lost))
+        return []
+
+    # the animation has to stay referenced until the window closes
+    animation = FuncAnimation(fig, update, interval=50, cache_frame_data=False)
+    plt.show()
+    return animation
+
+
+def serve_fake(port, rate):
+    """Pretends to be the robot: same header and frames, a robot driving in a circle."""
+    names = ["x", "y", "heading", "target_x", "target_y", "target_heading", "auto_move",
+             "power_ne", "power_se", "power_sw", "power_nw",
+             "flywheel_0", "flywheel_1", "flywheel_target", "loop_ms", "budget_amps"]
+    encoded = "\n".join(names).encode("utf-8")
+    header = MAGIC + struct.pack("<iii", VERSION, len(names), len(encoded)) + encoded
+    frame = struct.Struct("<iq%df" % len(names))
+
+    server = socket.socket()
+    server.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+    server.bind(("127.0.0.1", port))
+    server.listen(1)
+    print("fake robot on localhost:%d, %d Hz" % (port, rate))
+    while True:
+        client, _ = server.accept()
+        client.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        seq = 0
+        try:
+            client.sendall(header)
+            start = time.time()
+            while True:
+                t = time.time() - start
+                a = t * 0.5
+                flywheel = 1800 * (1 - math.exp(-t))
+                values = [800 * math.cos(a), 800 * math.sin(a), a + math.pi / 2, 500, 200, 0, 0,
+                          0.6, 0.6, 0.4, 0.4, flywheel, flywheel * 0.98, 1800,
+                          1000.0 / rate + 2 * math.sin(t * 7), 18]
+                client.sendall(frame.pack(seq, int(time.monotonic_ns()), *values))
+                seq += 1
+                time.sleep(1.0 / rate)
+        except OSError:
+            client.close()
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--host", default="192.168.43.1", help="Control Hub address")
+    parser.add_argument("--port", type=int, default=PORT)
+    parser.add_argument("--plot", default=DEFAULT_PLOT,
+                        help="channels to plot, ',' shares a graph and ';' starts a new one")
+    parser.add_argument("--field", help="field image, drawn under the robot (square, centred on the origin)")
+    parser.add_argument("--seconds", type=float, default=10, help="seconds of history on the graphs")
+    parser.add_argument("--print", action="store_true", help="print frames as text instead of plotting")
+    parser.add_argument("--every", type=float, default=0.25, help="seconds between printed frames")
+    parser.add_argument("--record", help="write every frame to this csv")
+    parser.add_argument("--serve-fake", action="store_true", help="act as a fake robot for testing")
+    parser.add_argument("--rate", type=int, default=50, help="--serve-fake frames per second")
+    args = parser.parse_args()
+
+    if args.serve_fake:
+        serve_fake(args.port, args.rate)
+        return
+
+    stream = Stream(args.host, args.port)
+    out = open(args.record, "w", newline="") if args.record else None
+    writer = None
+    if out:
+        writer = csv.writer(out)
+        writer.writerow(["seq", "time_s"] + stream.names)
+    try:
+        if args.print:
+            print_frames(stream, writer, args.every)
+        else:
+            groups = [g.split(",") for g in args.plot.split(";")]
+            plot_frames(stream, writer, groups, args.field, args.seconds)
+    except (KeyboardInterrupt, ConnectionError) as e:
+        if isinstance(e, ConnectionError):
+            print(e, file=sys.stderr)
+    finally:
+        if out:
+            out.close()
+        print("%d frames lost in transit" % stream.lost, file=sys.stderr)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,210 @@
+#!/usr/bin/env python3
+"""
+vision_bench.py - replay captured webcam frames through the AprilTag and colour blob
+pipelines on a laptop and compare vision settings by cost per detection.
+
+Frames come from UtilityCameraFrameCapture (portal.saveNextFrameRaw), copied off the
+Control Hub:
+    adb pull /sdcard/VisionPortal-CameraFrameCapture-000000.png frames/
+
+AprilTag decoding uses pupil-apriltags, which wraps the same AprilRobotics C library the
+FTC SDK runs, so decimation / blur behave the same way. The colour pipeline copies what
+ColorBlobLocatorProcessor does (YCrCb threshold, blur, erode/dilate, external contours).
+Absolute times are laptop times; use the ratios between settings, not the numbers.
+
+Optional ground truth for pose error, truth.csv next to the frames:
+    frame,tag_id,x_mm,y_mm,z_mm      (tag position in the camera frame)
+
+usage:
+    pip install opencv-python pupil-apriltags numpy
+    python3 tools/vision_bench.py frames/ --fx 822.3 --fy 822.3 --cx 319.5 --cy 242.8
+    python3 tools/vision_bench.py frames/ --csv results.csv
+"""
+
+import argparse
+import csv
+import glob
+import itertools
+import os
+import statistics
+import time
+
+import cv2
+import numpy as np
+
+try:
+    from pupil_apriltags import Detector
+except ImportError:
+    Detector = None
+
+# DECODE tag size (mm), 36h11 family like the SDK default
+TAG_SIZE_MM = 206.4
+
+# settings grid, every combination is benchmarked
+SCALES = [1.0, 0.5]            # 640x480 and 320x240 from the same captures
+DECIMATIONS = [1.0, 2.0, 3.0]  # AprilTagProcessor.setDecimation
+BLURS = [0.0, 0.8]             # quad_sigma (gaussian blur before quad detection)
+ROIS = {                       # fraction of the frame kept, centred
+    "full": (0.0, 0.0, 1.0, 1.0),
+    "centre75": (0.125, 0.125, 0.875, 0.875),
+}
+
+# approximation of ColorRange.ARTIFACT_PURPLE in YCrCb, check against the SDK if detection looks off
+PURPLE_LOW = np.array([32, 135, 135], dtype=np.uint8)
+PURPLE_HIGH = np.array([255, 155, 169], dtype=np.uint8)
+MIN_BLOB_AREA = 50
+
+
+def load_frames(folder):
+    paths = sorted(glob.glob(os.path.join(folder, "*.png")) + glob.glob(os.path.join(folder, "*.jpg")))
+    frames = []
+    for path in paths:
+        image = cv2.imread(path)
+        if image is not None:
+            frames.append((os.path.splitext(os.path.basename(path))[0], image))
+    return frames
+
+
+def load_truth(folder):
+    truth = {}
+    path = os.path.join(folder, "truth.csv")
+    if not os.path.exists(path):
+        return truth
+    with open(path) as f:
+        for row in csv.DictReader(f):
+            key = (row["frame"], int(row["tag_id"]))
+            truth[key] = np.array([float(row["x_mm"]), float(row["y_mm"]), float(row["z_mm"])])
+    return truth
+
+
+def crop(image, roi):
+    h, w = image.shape[:2]
+    x0, y0, x1, y1 = roi
+    ox, oy = int(w * x0), int(h * y0)
+    return image[oy:int(h * y1), ox:int(w * x1)], ox, oy
+
+
+def run_apriltag(frames, truth, scale, decimation, blur, roi, intrinsics):
+    detector = Detector(families="tag36h11", quad_decimate=decimation, quad_sigma=blur,
+                        refine_edges=1, decode_sharpening=0.25)
+    times, detected, errors = [], 0, []
+
+    for name, image in frames:
+        scaled = cv2.resize(image, None, fx=scale, fy=scale, interpolation=cv2.INTER_AREA) if scale != 1.0 else image
+        gray = cv2.cvtColor(scaled, cv2.COLOR_BGR2GRAY)
+        region, ox, oy = crop(gray, roi)
+
+        fx, fy, cx, cy = (v * scale for v in intrinsics) if intrinsics else (0, 0, 0, 0)
+        start = time.perf_counter()
+        if intrinsics:
+            results = detector.detect(region, estimate_tag_pose=True,
+                                      camera_params=(fx, fy, cx - ox, cy - oy), tag_size=TAG_SIZE_MM)
+        else:
+            results = detector.detect(region)
+        times.append((time.perf_counter() - start) * 1000)
+
+        if results:
+            detected += 1
+        for r in results:
+            expected = truth.get((name, r.tag_id))
+            if expected is not None and r.pose_t is not None:
+                errors.append(float(np.linalg.norm(r.pose_t.flatten() - expected)))
+
+    return times, detected, errors
+
+
+def run_colour(frames, scale, blur, roi):
+    times, detected = [], 0
+    blur_px = 5 if blur > 0 else 0
+    kernel = cv2.getStructuringElement(cv2.MORPH_ELLIPSE, (15, 15))
+
+    for _, image in frames:
+        scaled = cv2.resize(image, None, fx=scale, fy=scale, interpolation=cv2.INTER_AREA) if scale != 1.0 else image
+        region, _, _ = crop(scaled, roi)
+
+        start = time.perf_counter()
+        if blur_px:
+            region = cv2.blur(region, (blur_px, blur_px))
+        ycrcb = cv2.cvtColor(region, cv2.COLOR_BGR2YCrCb)
+        mask = cv2.inRange(ycrcb, PURPLE_LOW, PURPLE_HIGH)
+        mask = cv2.morphologyEx(mask, cv2.MORPH_CLOSE, kernel)
+        contours, _ = cv2.findContours(mask, cv2.RETR_EXTERNAL, cv2.CHAIN_APPROX_SIMPLE)
+        blobs = [c for c in contours if cv2.contourArea(c) >= MIN_BLOB_AREA]
+        times.append((time.perf_counter() - start) * 1000)
+
+        if blobs:
+            detected += 1
+
+    return times, detected
+
+
+def summarise(pipeline, settings, times, detected, frame_count, errors=None):
+    mean_ms = statistics.mean(times)
+    rate = detected / frame_count
+    return {
+        "pipeline": pipeline,
+        **settings,
+        "ms_per_frame": round(mean_ms, 2),
+        "p90_ms": round(sorted(times)[int(0.9 * (len(times) - 1))], 2),
+        "detection_rate": round(rate, 3),
+        # the number to pick settings by: decode time spent per useful frame
+        "ms_per_detection": round(mean_ms / rate, 2) if rate > 0 else float("inf"),
+        "pose_err_mm": round(statistics.mean(errors), 1) if errors else "",
+    }
+
+
+def print_table(rows):
+    columns = list(rows[0].keys())
+    widths = [max(len(c), *(len(str(r[c])) for r in rows)) for c in columns]
+    print("  ".join(c.ljust(w) for c, w in zip(columns, widths)))
+    print("  ".join("-" * w for w in widths))
+    for r in rows:
+        print("  ".join(str(r[c]).ljust(w) for c, w in zip(columns, widths)))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("frames", help="folder of captured frames")
+    parser.add_argument("--fx", type=float)
+    parser.add_argument("--fy", type=float)
+    parser.add_argument("--cx", type=float)
+    parser.add_argument("--cy", type=float)
+    parser.add_argument("--csv", help="also write the table to this csv")
+    parser.add_argument("--colour-only", action="store_true")
+    parser.add_argument("--tags-only", action="store_true")
+    args = parser.parse_args()
+
+    frames = load_frames(args.frames)
+    if not frames:
+        raise SystemExit("no frames found in " + args.frames)
+    truth = load_truth(args.frames)
+    intrinsics = (args.fx, args.fy, args.cx, args.cy) if args.fx else None
+    rows = []
+
+    if not args.colour_only:
+        if Detector is None:
+            raise SystemExit("pip install pupil-apriltags (or use --colour-only)")
+        for scale, decimation, blur, roi in itertools.product(SCALES, DECIMATIONS, BLURS, ROIS):
+            times, detected, errors = run_apriltag(frames, truth, scale, decimation, blur, ROIS[roi], intrinsics)
+            settings = {"scale": scale, "decimation": decimation, "blur": blur, "roi": roi}
+            rows.append(summarise("apriltag", settings, times, detected, len(frames), errors))
+
+    if not args.tags_only:
+        for scale, blur, roi in itertools.product(SCALES, BLURS, ROIS):
+            times, detected = run_colour(frames, scale, blur, ROIS[roi])
+            settings = {"scale": scale, "decimation": "", "blur": blur, "roi": roi}
+            rows.append(summarise("colour", settings, times, detected, len(frames)))
+
+    rows.sort(key=lambda r: (r["pipeline"], r["ms_per_detection"]))
+    print("%d frames from %s\n" % (len(frames), args.frames))
+    print_table(rows)
+
+    if args.csv:
+        with open(args.csv, "w", newline="") as f:
+            writer = csv.DictWriter(f, fieldnames=list(rows[0].keys()))
+            writer.writeheader()
+            writer.writerows(rows)
+
+
+if __name__ == "__main__":
+    main()